@@ -44,14 +44,18 @@ create table app
     isDelete     tinyint  default 0                 not null comment '是否删除',
     UNIQUE KEY uk_deployKey (deployKey), -- 确保部署标识唯一
     INDEX idx_appName (appName),         -- 提升基于应用名称的查询性能
-    INDEX idx_userId (userId)            -- 提升基于用户 ID 的查询性能
+    INDEX idx_userId (userId),           -- 提升基于用户 ID 的查询性能
+    FULLTEXT INDEX ft_appName (appName) WITH PARSER ngram,      -- 应用名称全文检索（ngram 分词支持中文）
+    FULLTEXT INDEX ft_initPrompt (initPrompt) WITH PARSER ngram -- 初始化 prompt 全文检索
 ) comment '应用' collate = utf8mb4_unicode_ci;
 
 -- 对话历史表
 create table chat_history
 (
     id          bigint auto_increment comment 'id' primary key,
-    message     text                               not null comment '消息',
+    message     mediumtext                         not null comment '消息',
+    messageCompressed tinyint default 0            not null comment '消息是否压缩存储（压缩内容在 messageGzip 中，message 为空）',
+    messageGzip mediumblob                         null comment 'gzip 压缩后的消息',
     messageType varchar(32)                        not null comment 'user/ai',
     appId       bigint                             not null comment '应用id',
     userId      bigint                             not null comment '创建用户id',
@@ -60,5 +64,29 @@ create table chat_history
     isDelete    tinyint  default 0                 not null comment '是否删除',
     INDEX idx_appId (appId),                       -- 提升基于应用的查询性能
     INDEX idx_createTime (createTime),             -- 提升基于时间的查询性能
-    INDEX idx_appId_createTime (appId, createTime) -- 游标查询核心索引
+    INDEX idx_appId_createTime_id (appId, createTime, id) -- 游标查询核心索引（与 (createTime, id) 游标顺序一致）
 ) comment '对话历史' collate = utf8mb4_unicode_ci;
+
+-- 已有数据库升级：对话历史消息改为 mediumtext（Vue 项目的 AI 回复压缩后仍可能超过 text 的 64 KB），以及压缩标记
+-- alter table chat_history modify column message mediumtext not null comment '消息';
+-- alter table chat_history add column messageCompressed tinyint default 0 not null comment '消息是否压缩存储（压缩内容在 messageGzip 中，message 为空）' after message;
+-- alter table chat_history add column messageGzip mediumblob null comment 'gzip 压缩后的消息' after messageCompressed;
+
+-- 已有数据库升级：应用名称和初始化 prompt 的全文索引（ngram_token_size 使用默认值 2，
+-- 建议关闭 innodb_ft_enable_stopword，避免 "is"、"on" 这类两字母停用词导致英文关键词漏查）
+-- alter table app add fulltext index ft_appName (appName) with parser ngram, add fulltext index ft_initPrompt (initPrompt) with parser ngram;
+
+-- 已有数据库升级：游标索引加上 id
+-- alter table chat_history drop index idx_appId_createTime, add index idx_appId_createTime_id (appId, createTime, id);
+
+-- 对话历史摘要表（较早的对话压缩成一段滚动摘要，重建记忆时放在最前面）
+create table if not exists chat_history_summary
+(
+    appId           bigint                             not null comment '应用id' primary key,
+    summary         text                               not null comment '摘要内容',
+    lastHistoryId   bigint                             not null comment '摘要覆盖到的最后一条对话历史id',
+    lastCreateTime  datetime                           not null comment '摘要覆盖到的最后一条对话历史创建时间',
+    summarizedCount int      default 0                 not null comment '已压缩进摘要的对话条数',
+    createTime      datetime default CURRENT_TIMESTAMP not null comment '创建时间',
+    updateTime      datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP comment '更新时间'
+) comment '对话历史摘要' collate = utf8mb4_unicode_ci;
@@ -1,9 +1,13 @@
 package com.wyb.aicodemotherme.ai;
 
-import com.github.benmanes.caffeine.cache.Cache;
+import cn.hutool.core.thread.ThreadUtil;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.wyb.aicodemotherme.ai.guardrail.PromptSafetyInputGuardrail;
+import com.wyb.aicodemotherme.ai.memory.TokenBudgetChatMemory;
 import com.wyb.aicodemotherme.ai.tools.ToolManager;
+import com.wyb.aicodemotherme.config.ChatMemoryConfig;
 import com.wyb.aicodemotherme.exception.BusinessException;
 import com.wyb.aicodemotherme.exception.ErrorCode;
 import com.wyb.aicodemotherme.model.enums.CodeGenTypeEnum;
@@ -11,7 +15,7 @@ import com.wyb.aicodemotherme.service.ChatHistoryService;
 import com.wyb.aicodemotherme.util.SpringContextUtil;
 import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
 import dev.langchain4j.data.message.ToolExecutionResultMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.service.AiServices;
 import jakarta.annotation.Resource;
@@ -19,6 +23,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Configuration;
 
 import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * AI 代码生成服务工厂（生产 AI service 的）
@@ -37,23 +46,29 @@ public class AiCodeGeneratorServiceFactory {
     @Resource
     private ToolManager toolManager;
 
+    @Resource
+    private ChatMemoryConfig chatMemoryConfig;
+
+    @Resource
+    private TokenCountEstimator chatMemoryTokenCountEstimator;
+
 
     /**
      * 根据appId 和 codeGenType（ 生成类型）获取 AI 代码生成服务
      * @return
      */
 
-    private AiCodeGeneratorService createAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType) {
-        log.debug("为appId:{}创建新的AI服务实例", appId);
+    private AiCodeGeneratorService createAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType, boolean loadHistory) {
+        log.debug("为appId:{}创建新的AI服务实例，是否加载历史对话:{}", appId, loadHistory);
         //1. 根据 appId 构建独立的对话记忆（下次对话时把存储的对话带上去)
-        MessageWindowChatMemory chatMemory = MessageWindowChatMemory.builder() //负责“保留最近 N 条”的策略（怎么裁剪、怎么取窗口）
-                .id(appId)
-                .chatMemoryStore(redisChatMemoryStore) //负责“把消息存哪里”的存储层接口（MemoryStore）
-                .maxMessages(20)
-                .build();
+        //   按 token 预算裁剪窗口（而不是固定 N 条），超长的工具输出会被截断；消息仍存在 Redis 里
+        TokenBudgetChatMemory chatMemory = new TokenBudgetChatMemory(appId, redisChatMemoryStore,
+                chatMemoryTokenCountEstimator, chatMemoryConfig.getMaxTokens(), chatMemoryConfig.getMaxMessageTokens());
 
-        //2. 从数据库加载历史对话到记忆中
-        chatHistoryService.loadChatHistoryToMemory(appId, chatMemory, 20);
+        //2. 从数据库加载历史对话到记忆中（后台刷新时记忆一直保存在 Redis 里，不重新加载，避免清掉进行中对话的记忆）
+        if (loadHistory) {
+            chatHistoryService.loadChatHistoryToMemory(appId, chatMemory, chatMemoryConfig.getMaxLoadMessages());
+        }
 
         //3. 根据代码生成类型选择不同的模型配置
         return switch (codeGenType) {
@@ -100,24 +115,48 @@ public class AiCodeGeneratorServiceFactory {
     }
 
     /**
-     * AI服务实例缓存 (Caffeine)
+     * 缓存 key：应用 id + 代码生成类型
+     */
+    private record ServiceKey(long appId, CodeGenTypeEnum codeGenType) {
+    }
+
+    /**
+     * 创建 AI 服务实例的线程池（首次加载要查库、写 Redis，不占用请求线程）
+     */
+    private final ExecutorService serviceLoaderExecutor = new ThreadPoolExecutor(2, 4,
+            60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(1000),
+            ThreadUtil.newNamedThreadFactory("ai-service-loader-", true),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+
+    /**
+     * AI服务实例缓存 (Caffeine 异步缓存)
      * 缓存策略
      * 最大缓存1000个实例
-     * 写入后 30分钟过期
-     * 访问后 10分钟过期
+     * 同一个 key 同时只会创建一次，并发请求等待同一个 future
+     * 写入 10 分钟后再次访问时在后台刷新，刷新期间继续使用旧实例，请求不用等待重建
+     * 30 分钟不访问就过期
      */
-    //定义一个成员变量 serviceCache
-    //用 Caffeine 创建缓存（本地内存缓存库，性能很好）
-    private static Cache<String, AiCodeGeneratorService> serviceCache = Caffeine.newBuilder()
+    private final AsyncLoadingCache<ServiceKey, AiCodeGeneratorService> serviceCache = Caffeine.newBuilder()
             .maximumSize(1000) //缓存最多存 1000 个服务实例
-            .expireAfterWrite(Duration.ofMinutes(30)) //写入后 30 分钟过期
-            .expireAfterAccess(Duration.ofMinutes(10)) //10 分钟不访问就过期
+            .refreshAfterWrite(Duration.ofMinutes(10)) //写入 10 分钟后访问触发后台刷新
+            .expireAfterAccess(Duration.ofMinutes(30)) //30 分钟不访问就过期
+            .executor(serviceLoaderExecutor)
             .removalListener((key, value, cause) -> { //设置移除监听器
                 log.debug("AI服务实例被移除，cacheKey:{},原因:{}", key, cause);
             })
-            .build();
-
-
+            .buildAsync(new CacheLoader<>() {
+                @Override
+                public AiCodeGeneratorService load(ServiceKey key) {
+                    // 首次创建：从数据库加载历史对话到记忆
+                    return createAiCodeGeneratorService(key.appId(), key.codeGenType(), true);
+                }
+
+                @Override
+                public AiCodeGeneratorService reload(ServiceKey key, AiCodeGeneratorService oldValue) {
+                    // 后台刷新：只重建服务实例
+                    return createAiCodeGeneratorService(key.appId(), key.codeGenType(), false);
+                }
+            });
 
     /**
      * 根据 cacheKey 获取 AI 服务（带缓存）
@@ -125,26 +164,31 @@ public class AiCodeGeneratorServiceFactory {
      * @return
      */
     public AiCodeGeneratorService getAiCodeGeneratorService(long appId,CodeGenTypeEnum codeGenType) {
-        String cacheKey = buildCacheKey(appId,codeGenType);
-        //如果能找到则直接返回，找不到则创建一个cacheKey缓存
-        return serviceCache.get(cacheKey,key -> createAiCodeGeneratorService(appId,codeGenType));
+        //如果能找到则直接返回，找不到则创建（预热中的实例直接等待预热结果）
+        try {
+            return serviceCache.get(new ServiceKey(appId, codeGenType)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "创建 AI 服务失败");
+        }
     }
 
     /**
-     * 构建 caffeine 缓存键
+     * 预热 AI 服务：用户打开应用页面时在后台创建好服务实例，发消息时不用再等待加载历史对话
      * @param appId
      * @param codeGenType
-     * @return
      */
-    private String buildCacheKey(long appId, CodeGenTypeEnum codeGenType) {
-        return appId + "-" + codeGenType.getValue();
+    public void prewarm(long appId, CodeGenTypeEnum codeGenType) {
+        serviceCache.get(new ServiceKey(appId, codeGenType));
     }
 
     /**
      * 清理所有缓存（用于解决类加载器冲突问题）
      */
     public void clearAllCache() {
-        serviceCache.invalidateAll();
+        serviceCache.synchronous().invalidateAll();
         log.info("已清理所有AI服务实例缓存");
     }
 }
@@ -0,0 +1,19 @@
+package com.wyb.aicodemotherme.ai;
+
+import dev.langchain4j.service.SystemMessage;
+
+/**
+ * 对话历史摘要服务
+ * 把较早的对话压缩成一段滚动摘要
+ */
+public interface ChatHistorySummaryService {
+
+    /**
+     * 合并之前的摘要和新增的对话，生成新的摘要
+     *
+     * @param conversation 之前的摘要 + 新增的对话内容
+     * @return 新的摘要
+     */
+    @SystemMessage(fromResource = "prompt/chat-history-summary-system-prompt.txt")
+    String summarize(String conversation);
+}
@@ -0,0 +1,30 @@
+package com.wyb.aicodemotherme.ai;
+
+import com.wyb.aicodemotherme.util.SpringContextUtil;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.service.AiServices;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Scope;
+
+/**
+ * 对话历史摘要服务工厂
+ */
+@Slf4j
+@Configuration
+public class ChatHistorySummaryServiceFactory {
+
+    /**
+     * 创建对话历史摘要服务实例
+     */
+    @Bean
+    @Scope("prototype")
+    public ChatHistorySummaryService chatHistorySummaryServicePrototype() {
+        // 摘要不需要推理能力，复用路由用的轻量 ChatModel（多例，支持并发）
+        ChatModel chatModel = SpringContextUtil.getBean("routingChatModelPrototype", ChatModel.class);
+        return AiServices.builder(ChatHistorySummaryService.class)
+                .chatModel(chatModel)
+                .build();
+    }
+}
@@ -0,0 +1,118 @@
+package com.wyb.aicodemotherme.ai.memory;
+
+import com.wyb.aicodemotherme.config.RedisChatMemoryStoreConfig;
+import com.wyb.aicodemotherme.mapper.ChatHistoryMapper;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 对话记忆版本标记
+ * 在 Redis 里为每个应用记录一个标记 chat_memory_version:{appId}，值为记忆已同步到的最新一条对话历史 id：
+ * 1. 从数据库重建记忆后写入标记
+ * 2. 对话过程中记忆和数据库同时增长，保存对话历史时顺带推进标记（只在标记存在时推进）
+ * 3. AI 服务实例重新创建时，标记记录的 id 等于数据库里该应用最新一条对话历史的 id，且 Redis 里的记忆没有过期，
+ *    就说明记忆已经是最新的，不再查库重建（调用前需要先把异步写入队列里的消息写入数据库）
+ * 标记和记忆使用相同的过期时间，记忆过期后标记也会很快过期
+ */
+@Slf4j
+@Component
+public class ChatMemoryVersionStore {
+
+    private static final String VERSION_KEY_PREFIX = "chat_memory_version:";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private ChatHistoryMapper chatHistoryMapper;
+
+    @Resource
+    private RedisChatMemoryStoreConfig redisChatMemoryStoreConfig;
+
+    /**
+     * Redis 中的记忆是否已经是最新的（可以跳过重建）
+     *
+     * @param appId 应用 id
+     * @return 是否最新
+     */
+    public boolean isUpToDate(Long appId) {
+        try {
+            String syncedHistoryId = stringRedisTemplate.opsForValue().get(buildKey(appId));
+            if (syncedHistoryId == null) {
+                return false;
+            }
+            // 只判断记忆是否存在，不读取和反序列化整个消息列表
+            if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(buildMemoryKey(appId)))) {
+                return false;
+            }
+            // 标记必须对应数据库里最新的一条对话（按 (appId, createTime, id) 索引倒序取一条）
+            Long latestHistoryId = chatHistoryMapper.selectLatestId(appId);
+            return latestHistoryId != null && syncedHistoryId.equals(String.valueOf(latestHistoryId));
+        } catch (Exception e) {
+            log.warn("读取对话记忆版本失败，appId: {}, error: {}", appId, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 记忆从数据库重建完成后写入标记
+     *
+     * @param appId         应用 id
+     * @param lastHistoryId 记忆包含的最新一条对话历史 id
+     */
+    public void markSynced(Long appId, Long lastHistoryId) {
+        try {
+            stringRedisTemplate.opsForValue().set(buildKey(appId), String.valueOf(lastHistoryId), getTtl());
+        } catch (Exception e) {
+            log.warn("写入对话记忆版本失败，appId: {}, error: {}", appId, e.getMessage());
+        }
+    }
+
+    /**
+     * 保存新的对话历史后推进标记（标记不存在说明记忆还没建立，不写入）
+     *
+     * @param appId     应用 id
+     * @param historyId 新的对话历史 id
+     */
+    public void advance(Long appId, Long historyId) {
+        try {
+            stringRedisTemplate.opsForValue().setIfPresent(buildKey(appId), String.valueOf(historyId), getTtl());
+        } catch (Exception e) {
+            log.warn("推进对话记忆版本失败，appId: {}, error: {}", appId, e.getMessage());
+        }
+    }
+
+    /**
+     * 删除标记，下次创建 AI 服务时从数据库重建记忆
+     *
+     * @param appId 应用 id
+     */
+    public void invalidate(Long appId) {
+        try {
+            stringRedisTemplate.delete(buildKey(appId));
+        } catch (Exception e) {
+            log.warn("删除对话记忆版本失败，appId: {}, error: {}", appId, e.getMessage());
+        }
+    }
+
+    private Duration getTtl() {
+        long ttl = redisChatMemoryStoreConfig.getTtl();
+        // 记忆没有设置过期时间时，标记也保留一天，避免长期残留
+        return Duration.ofSeconds(ttl > 0 ? ttl : Duration.ofDays(1).toSeconds());
+    }
+
+    /**
+     * RedisChatMemoryStore 没有配置前缀，记忆的 key 就是 memoryId（appId）
+     */
+    private static String buildMemoryKey(Long appId) {
+        return String.valueOf(appId);
+    }
+
+    private static String buildKey(Long appId) {
+        return VERSION_KEY_PREFIX + appId;
+    }
+}
@@ -0,0 +1,31 @@
+package com.wyb.aicodemotherme.ai.model.message;
+
+import com.wyb.aicodemotherme.model.enums.VueBuildPhaseEnum;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * Vue 项目构建日志消息
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class BuildLogMessage extends StreamMessage {
+
+    /**
+     * 构建阶段（install / build）
+     */
+    private String phase;
+
+    /**
+     * 一行构建输出
+     */
+    private String content;
+
+    public BuildLogMessage(VueBuildPhaseEnum phaseEnum, String content) {
+        super(StreamMessageTypeEnum.BUILD_LOG.getValue());
+        this.phase = phaseEnum.getValue();
+        this.content = content;
+    }
+}
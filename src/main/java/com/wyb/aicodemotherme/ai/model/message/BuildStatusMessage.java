@@ -0,0 +1,31 @@
+package com.wyb.aicodemotherme.ai.model.message;
+
+import com.wyb.aicodemotherme.model.enums.VueBuildStatusEnum;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * Vue 项目构建状态消息
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class BuildStatusMessage extends StreamMessage {
+
+    /**
+     * 构建状态（queued / building / success / failed）
+     */
+    private String status;
+
+    /**
+     * 状态描述
+     */
+    private String description;
+
+    public BuildStatusMessage(VueBuildStatusEnum statusEnum) {
+        super(StreamMessageTypeEnum.BUILD_STATUS.getValue());
+        this.status = statusEnum.getValue();
+        this.description = statusEnum.getText();
+    }
+}
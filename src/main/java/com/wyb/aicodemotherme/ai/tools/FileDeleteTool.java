@@ -2,6 +2,7 @@ package com.wyb.aicodemotherme.ai.tools;
 
 import cn.hutool.json.JSONObject;
 import com.wyb.aicodemotherme.constant.AppConstant;
+import com.wyb.aicodemotherme.core.preview.PreviewFileCache;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
@@ -46,6 +47,7 @@ public class FileDeleteTool  extends BaseTool {
                 return "错误：不允许删除重要文件 - " + fileName;
             }
             Files.delete(path);
+            PreviewFileCache.invalidate(path);
             log.info("成功删除文件: {}", path.toAbsolutePath());
             return "文件删除成功: " + relativeFilePath;
         } catch (IOException e) {
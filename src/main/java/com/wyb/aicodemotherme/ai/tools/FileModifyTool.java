@@ -2,6 +2,7 @@ package com.wyb.aicodemotherme.ai.tools;
 
 import cn.hutool.json.JSONObject;
 import com.wyb.aicodemotherme.constant.AppConstant;
+import com.wyb.aicodemotherme.core.preview.PreviewFileCache;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
@@ -51,6 +52,7 @@ public class FileModifyTool extends BaseTool {
                 return "信息：替换后文件内容未发生变化 - " + relativeFilePath;
             }
             Files.writeString(path, modifiedContent, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            PreviewFileCache.invalidate(path);
             log.info("成功修改文件: {}", path.toAbsolutePath());
             return "文件修改成功: " + relativeFilePath;
         } catch (IOException e) {
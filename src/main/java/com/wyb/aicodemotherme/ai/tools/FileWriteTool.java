@@ -3,6 +3,7 @@ package com.wyb.aicodemotherme.ai.tools;
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.json.JSONObject;
 import com.wyb.aicodemotherme.constant.AppConstant;
+import com.wyb.aicodemotherme.core.preview.PreviewFileCache;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
@@ -55,6 +56,7 @@ public class FileWriteTool extends BaseTool {
                     StandardOpenOption.CREATE, //文件不存在 → 创建
                     StandardOpenOption.TRUNCATE_EXISTING //文件存在 → 清空再写（覆盖）
             );
+            PreviewFileCache.invalidate(path);
             log.info("成功写入文件: {}", path.toAbsolutePath());
             return "文件写入成功:{}" + relativeFilePath;
         } catch (IOException e) {
@@ -0,0 +1,30 @@
+package com.wyb.aicodemotherme.common;
+
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 滚动加载分页（不执行 COUNT 查询）
+ * 多查一条判断是否还有下一页；total 为缓存的近似总数，没有要求近似总数时为已知的下界
+ */
+@Getter
+@Setter
+public class ScrollPage<T> extends Page<T> {
+
+    /**
+     * 是否还有下一页
+     */
+    private Boolean hasMore;
+
+    /**
+     * total 是否为近似值
+     */
+    private Boolean totalApproximate;
+
+    private static final long serialVersionUID = 1L;
+
+    public ScrollPage(long current, long size) {
+        super(current, size, false);
+    }
+}
@@ -0,0 +1,41 @@
+package com.wyb.aicodemotherme.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 应用列表查询配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.app-list")
+@Data
+public class AppListConfig {
+
+    /**
+     * 滚动加载模式下近似总数的缓存时间（秒），同一查询条件在这段时间内只执行一次 COUNT
+     * 新增、删除应用不主动失效，总数最多滞后这么久
+     */
+    private Long approximateTotalTtlSeconds = 60L;
+
+    /**
+     * 近似总数最多缓存的查询条件数
+     */
+    private Long approximateTotalMaxEntries = 1000L;
+
+    /**
+     * 应用名称、初始化 prompt 使用全文索引（MATCH ... AGAINST）检索，关闭时使用 LIKE
+     * 默认关闭：没有建全文索引的数据库执行 MATCH 会直接报错，执行 sql 中的全文索引语句后再开启
+     */
+    private Boolean fulltextSearchEnabled = false;
+
+    /**
+     * 全文检索的最短关键词长度（与 MySQL 的 ngram_token_size 一致），更短的关键词退回 LIKE
+     */
+    private Integer fulltextMinKeywordLength = 2;
+
+    /**
+     * 精选应用列表缓存版本号的本地缓存时间（毫秒），其他实例更新版本号后最多延迟这么久生效
+     */
+    private Long goodAppCacheVersionRefreshMillis = 1000L;
+}
@@ -0,0 +1,59 @@
+package com.wyb.aicodemotherme.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 对话历史存储配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.chat-history")
+@Data
+public class ChatHistoryConfig {
+
+    /**
+     * 是否异步批量写入（关闭时每条消息同步 INSERT）
+     */
+    private Boolean writeBehindEnabled = true;
+
+    /**
+     * 批量写入的时间间隔（毫秒）
+     */
+    private Long flushIntervalMillis = 200L;
+
+    /**
+     * 积累到多少条立即写入，同时也是单条 INSERT 的最大行数
+     */
+    private Integer flushBatchSize = 100;
+
+    /**
+     * 单条 INSERT 的最大估算字节数，需小于 MySQL 的 max_allowed_packet
+     */
+    private Long flushBatchMaxBytes = 4L * 1024 * 1024;
+
+    /**
+     * 写入本地溢写文件后是否立即刷盘（开启后断电也不丢消息，但每条消息多一次磁盘同步）
+     */
+    private Boolean spillFsync = false;
+
+    /**
+     * 待写入队列的最大积压条数，超过后拒绝保存新消息
+     */
+    private Integer maxPendingMessages = 10000;
+
+    /**
+     * 批量写入失败后的首次重试间隔（毫秒），连续失败时翻倍
+     */
+    private Long retryBackoffInitialMillis = 1000L;
+
+    /**
+     * 批量写入失败后的最大重试间隔（毫秒）
+     */
+    private Long retryBackoffMaxMillis = 60000L;
+
+    /**
+     * 消息超过该字节数时压缩存储，不大于 0 表示不压缩
+     */
+    private Integer messageCompressThresholdBytes = 8192;
+}
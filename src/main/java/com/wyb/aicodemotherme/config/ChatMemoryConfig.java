@@ -0,0 +1,77 @@
+package com.wyb.aicodemotherme.config;
+
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.openai.OpenAiTokenCountEstimator;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 对话记忆配置（按 token 预算裁剪记忆窗口）
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.chat-memory")
+@Data
+public class ChatMemoryConfig {
+
+    /**
+     * 记忆窗口的 token 预算，超出时从最早的消息开始淘汰
+     */
+    private Integer maxTokens = 16000;
+
+    /**
+     * 单条工具输出 / AI 回复的 token 上限，超出时保留首尾、截断中间
+     */
+    private Integer maxMessageTokens = 3000;
+
+    /**
+     * 从数据库重建记忆时最多读取的对话条数（再按 token 预算裁剪）
+     */
+    private Integer maxLoadMessages = 50;
+
+    /**
+     * 是否在后台把较早的对话压缩成滚动摘要
+     */
+    private Boolean summaryEnabled = true;
+
+    /**
+     * 最新的多少条对话不参与压缩（保留原文）
+     */
+    private Integer summaryKeepRecentMessages = 20;
+
+    /**
+     * 待压缩的对话至少积累多少条才生成一次摘要
+     */
+    private Integer summaryMinMessages = 10;
+
+    /**
+     * 单次最多压缩多少条对话
+     */
+    private Integer summaryBatchMessages = 60;
+
+    /**
+     * 送去压缩时单条对话保留的最大字符数（Vue 项目的 AI 回复包含完整的工具调用记录）
+     */
+    private Integer summaryMessageMaxChars = 2000;
+
+    /**
+     * 摘要的最大字符数
+     */
+    private Integer summaryMaxChars = 4000;
+
+    /**
+     * 后台压缩任务的执行间隔（毫秒）
+     */
+    private Long summaryIntervalMillis = 60000L;
+
+    /**
+     * 估算 token 用的编码（DeepSeek 等模型没有公开的分词器，用 OpenAI 的编码近似估算）
+     */
+    private String tokenizerModelName = "gpt-4o";
+
+    @Bean
+    public TokenCountEstimator chatMemoryTokenCountEstimator() {
+        return new OpenAiTokenCountEstimator(tokenizerModelName);
+    }
+}
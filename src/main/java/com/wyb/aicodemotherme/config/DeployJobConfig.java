@@ -0,0 +1,29 @@
+package com.wyb.aicodemotherme.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 异步部署任务配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.deploy")
+@Data
+public class DeployJobConfig {
+
+    /**
+     * 同时执行的最大部署任务数
+     */
+    private Integer maxConcurrentJobs = 2;
+
+    /**
+     * 排队中的部署任务上限，超出直接拒绝
+     */
+    private Integer queueCapacity = 50;
+
+    /**
+     * 同步部署接口等待结果的最长时间（毫秒）
+     */
+    private Long syncWaitTimeoutMillis = 600000L;
+}
@@ -0,0 +1,39 @@
+package com.wyb.aicodemotherme.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 项目代码下载配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.download")
+@Data
+public class ProjectDownloadConfig {
+
+    /**
+     * zip 压缩级别（0-9），越大压缩包越小、CPU 开销越大
+     */
+    private Integer compressionLevel = 6;
+
+    /**
+     * 是否缓存打包好的 zip（项目文件未变化时重复下载直接返回缓存文件，不再压缩）
+     */
+    private Boolean archiveCacheEnabled = true;
+
+    /**
+     * 旧指纹的压缩包最近这么多分钟内没有被下载过才删除，避免删掉正在交给 sendfile 发送的文件
+     */
+    private Integer staleArchiveGraceMinutes = 10;
+
+    /**
+     * 是否并行压缩（文件较多的项目按条目分给多个线程压缩）
+     */
+    private Boolean parallelCompressionEnabled = true;
+
+    /**
+     * 并行压缩的线程数，不大于 0 时使用 CPU 核数
+     */
+    private Integer compressionParallelism = 0;
+}
@@ -0,0 +1,29 @@
+package com.wyb.aicodemotherme.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * SSE 输出合并配置（把细碎的 LLM 增量合并成一批再推送）
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.sse.coalescing")
+@Data
+public class SseCoalescingConfig {
+
+    /**
+     * 是否开启合并
+     */
+    private Boolean enabled = true;
+
+    /**
+     * 一批累计达到多少字节立即推送
+     */
+    private Integer maxBytes = 1024;
+
+    /**
+     * 一批最多等待多少毫秒推送
+     */
+    private Long maxDelayMillis = 30L;
+}
@@ -0,0 +1,39 @@
+package com.wyb.aicodemotherme.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Vue 项目构建配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.vue-build")
+@Data
+public class VueBuildConfig {
+
+    /**
+     * 同时执行的最大构建数（每个构建会启动 npm 进程）
+     */
+    private Integer maxConcurrentBuilds = 2;
+
+    /**
+     * 是否开启共享 node_modules 缓存（package.json + 锁文件相同的项目直接复用依赖，跳过 npm install）
+     */
+    private Boolean dependencyCacheEnabled = true;
+
+    /**
+     * 是否使用常驻的 Vite 构建 worker 池代替每次冷启动 npm run build
+     */
+    private Boolean workerPoolEnabled = false;
+
+    /**
+     * 常驻 worker 数量
+     */
+    private Integer workerPoolSize = 2;
+
+    /**
+     * 单个 worker 最多执行的构建次数，达到后重启进程释放内存
+     */
+    private Integer workerMaxBuilds = 50;
+}
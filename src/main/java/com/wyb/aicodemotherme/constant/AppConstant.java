@@ -20,11 +20,32 @@ public interface AppConstant {
      */
     String CODE_OUTPUT_ROOT_DIR = System.getProperty("user.dir") + "/tmp/code_output";
 
+    /**
+     * 生成中的临时目录后缀（tmp/code_output/html_1001.generating/{runId}），每次生成使用各自的 runId 子目录，
+     * 代码块边生成边写入，完成后原子替换到生成目录
+     */
+    String CODE_OUTPUT_STAGING_SUFFIX = ".generating";
+
     /**
      * 应用部署目录,部署之后在另开一个浏览窗口看的
      */
     String CODE_DEPLOY_ROOT_DIR = System.getProperty("user.dir") + "/tmp/code_deploy";
 
+    /**
+     * Vue 项目依赖缓存目录，按 package.json + 锁文件的哈希存放共享的 node_modules
+     */
+    String DEPENDENCY_CACHE_ROOT_DIR = System.getProperty("user.dir") + "/tmp/dependency_cache";
+
+    /**
+     * 项目下载压缩包缓存目录，按项目文件指纹存放打包好的 zip
+     */
+    String DOWNLOAD_CACHE_ROOT_DIR = System.getProperty("user.dir") + "/tmp/download_cache";
+
+    /**
+     * 对话历史异步写入的本地溢写目录，未写入数据库的消息先追加到这里，进程崩溃后启动时重放
+     */
+    String CHAT_HISTORY_SPILL_DIR = System.getProperty("user.dir") + "/tmp/chat_history_spill";
+
     /**
      * 应用部署域名
      */
@@ -3,14 +3,19 @@ package com.wyb.aicodemotherme.controller;
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONUtil;
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.wyb.aicodemotherme.ai.AiCodeGeneratorServiceFactory;
 import com.wyb.aicodemotherme.annotation.AuthCheck;
 import com.wyb.aicodemotherme.common.BaseResponse;
 import com.wyb.aicodemotherme.common.DeleteRequest;
 import com.wyb.aicodemotherme.common.ResultUtils;
+import com.wyb.aicodemotherme.config.DeployJobConfig;
+import com.wyb.aicodemotherme.config.SseCoalescingConfig;
 import com.wyb.aicodemotherme.constant.AppConstant;
 import com.wyb.aicodemotherme.constant.UserConstant;
+import com.wyb.aicodemotherme.core.deploy.DeployJob;
+import com.wyb.aicodemotherme.core.deploy.DeployJobManager;
+import com.wyb.aicodemotherme.core.handler.StreamChunkCoalescer;
 import com.wyb.aicodemotherme.exception.BusinessException;
 import com.wyb.aicodemotherme.exception.ErrorCode;
 import com.wyb.aicodemotherme.exception.ThrowUtils;
@@ -19,23 +24,26 @@ import com.wyb.aicodemotherme.model.entity.App;
 import com.wyb.aicodemotherme.model.entity.User;
 import com.wyb.aicodemotherme.model.enums.CodeGenTypeEnum;
 import com.wyb.aicodemotherme.model.vo.AppVO;
+import com.wyb.aicodemotherme.model.vo.DeployJobVO;
 import com.wyb.aicodemotherme.service.AppService;
 import com.wyb.aicodemotherme.service.ProjectDownloadService;
 import com.wyb.aicodemotherme.service.UserService;
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.io.File;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -52,6 +60,18 @@ public class AppController {
     @Resource
     private ProjectDownloadService projectDownloadService;
 
+    @Resource
+    private SseCoalescingConfig sseCoalescingConfig;
+
+    @Resource
+    private DeployJobManager deployJobManager;
+
+    @Resource
+    private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
+
+    @Resource
+    private DeployJobConfig deployJobConfig;
+
     /**
      * 创建应用
      *
@@ -131,15 +151,29 @@ public class AppController {
      * @return 应用详情
      */
     @GetMapping("/get/vo")
-    public BaseResponse<AppVO> getAppVOById(long id) {
+    public BaseResponse<AppVO> getAppVOById(long id, HttpServletRequest request) {
         ThrowUtils.throwIf(id <= 0, ErrorCode.PARAMS_ERROR);
         // 查询数据库
         App app = appService.getById(id);
         ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR);
+        // 创建者打开对话页时，在后台预热 AI 服务实例，发送消息时不用再等待加载历史对话
+        prewarmAiService(app, request);
         // 获取封装类（包含用户信息）
         return ResultUtils.success(appService.getAppVO(app));
     }
 
+    /**
+     * 预热 AI 服务（只对应用创建者生效，直接读取会话中的登录态，不查库）
+     */
+    private void prewarmAiService(App app, HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        Object userObj = session == null ? null : session.getAttribute(UserConstant.USER_LOGIN_STATE);
+        CodeGenTypeEnum codeGenTypeEnum = CodeGenTypeEnum.getEnumByValue(app.getCodeGenType());
+        if (userObj instanceof User loginUser && app.getUserId().equals(loginUser.getId()) && codeGenTypeEnum != null) {
+            aiCodeGeneratorServiceFactory.prewarm(app.getId(), codeGenTypeEnum);
+        }
+    }
+
     /**
      * 分页获取当前用户创建的应用列表
      *
@@ -159,29 +193,14 @@ public class AppController {
         long pageSize = appQueryRequest.getPageSize();
         // 校验每页大小，限制最多20条，防止恶意请求大量数据
         ThrowUtils.throwIf(pageSize > 20, ErrorCode.PARAMS_ERROR, "每页最多查询 20 个应用");
-        // 校验页码
-        long pageNum = appQueryRequest.getPageNum();
         // 4. 设置查询条件：只查询当前用户的应用
         // 将登录用户的 ID 设置到查询条件中，实现数据权限控制
         appQueryRequest.setUserId(loginUser.getId());
 
-        // 5. 构建查询条件
-        QueryWrapper queryWrapper = appService.getQueryWrapper(appQueryRequest);
-
-        // 6. 分页查询
-        Page<App> appPage = appService.page(Page.of(pageNum, pageSize), queryWrapper);
-
-        // 7. 数据转换和封装
-        // 创建新的 Page<AppVO> 对象，继承原始分页信息（页码、每页大小、总记录数）
-        Page<AppVO> appVOPage = new Page<>(pageNum, pageSize, appPage.getTotal());
-
-        // 将 App 实体列表转换为 AppVO 列表（包含关联的用户信息）
-        List<AppVO> appVOList = appService.getAppVOList(appPage.getRecords());
-
-        // 将转换后的 VO 列表设置到分页对象中
-        appVOPage.setRecords(appVOList);
+        // 5. 分页查询并转换为 AppVO（loadMore 为 true 时不查询总数）
+        Page<AppVO> appVOPage = appService.listAppVOByPage(appQueryRequest);
 
-        // 8. 返回结果
+        // 6. 返回结果
         return ResultUtils.success(appVOPage);
     }
 
@@ -240,15 +259,8 @@ public class AppController {
     @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
     public BaseResponse<Page<AppVO>> listAppVOByPageByAdmin(@RequestBody AppQueryRequest appQueryRequest) {
         ThrowUtils.throwIf(appQueryRequest == null, ErrorCode.PARAMS_ERROR);
-        long pageNum = appQueryRequest.getPageNum();
-        long pageSize = appQueryRequest.getPageSize();
-        QueryWrapper queryWrapper = appService.getQueryWrapper(appQueryRequest);
-        Page<App> appPage = appService.page(Page.of(pageNum, pageSize), queryWrapper);
-        // 数据封装
-        Page<AppVO> appVOPage = new Page<>(pageNum, pageSize, appPage.getTotal());
-        List<AppVO> appVOList = appService.getAppVOList(appPage.getRecords());
-        appVOPage.setRecords(appVOList);
-        return ResultUtils.success(appVOPage);
+        // 分页查询并封装（loadMore 为 true 时不查询总数）
+        return ResultUtils.success(appService.listAppVOByPage(appQueryRequest));
     }
 
     /**
@@ -294,8 +306,14 @@ public class AppController {
             User loginUser = userService.getLoginUser(request);
             // 3.调用服务层方法，获取原始内容流（返回Flux<String>）
             Flux<String> contentFlux = appService.chatToGenCode(appId, message, loginUser);
-
-            // 4. 将原始内容流转换为 ServerSentEvent 格式
+            // 4. 合并细碎的增量（按字节数或等待时间分批），减少 SSE 事件数量
+            if (Boolean.TRUE.equals(sseCoalescingConfig.getEnabled())) {
+                contentFlux = StreamChunkCoalescer.coalesce(contentFlux,
+                        sseCoalescingConfig.getMaxBytes(),
+                        Duration.ofMillis(sseCoalescingConfig.getMaxDelayMillis()));
+            }
+
+            // 5. 将内容流转换为 ServerSentEvent 格式
             return contentFlux
                     .map(chunk -> {
                         //Map.of("d", chunk)：把 chunk 放进一个 Map，key 是 "d"
@@ -322,7 +340,7 @@ public class AppController {
                                 .data(errorData) //data 是 {"error":"xxx"}
                                 .build());
                     })
-                    // 5. 发送结束事件
+                    // 6. 发送结束事件
                     .concatWith(
                             //使用Mono创建单个结束事件
                             Mono.just(
@@ -364,15 +382,80 @@ public class AppController {
      * @return 部署 URL
      */
     @PostMapping("/deploy")
-    public BaseResponse<String> deployApp(@RequestBody AppDeployRequest appDeployRequest, HttpServletRequest request) {
+    public DeferredResult<BaseResponse<?>> deployApp(@RequestBody AppDeployRequest appDeployRequest, HttpServletRequest request) {
         ThrowUtils.throwIf(appDeployRequest == null, ErrorCode.PARAMS_ERROR);
         Long appId = appDeployRequest.getAppId();
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
         // 获取当前登录用户
         User loginUser = userService.getLoginUser(request);
-        // 调用服务部署应用
-        String deployUrl = appService.deployApp(appId, loginUser);
-        return ResultUtils.success(deployUrl);
+        // 提交到部署线程池，请求线程立即释放；部署完成后再写回响应，接口返回值保持不变
+        DeployJob deployJob = appService.submitDeployJob(appId, loginUser);
+        DeferredResult<BaseResponse<?>> deferredResult = new DeferredResult<>(deployJobConfig.getSyncWaitTimeoutMillis(),
+                () -> ResultUtils.error(ErrorCode.OPERATION_ERROR, "部署仍在进行中，任务 ID: " + deployJob.getJobId()));
+        deployJob.getResultFuture().whenComplete((deployUrl, throwable) -> {
+            if (throwable == null) {
+                deferredResult.setResult(ResultUtils.success(deployUrl));
+            } else if (throwable instanceof BusinessException e) {
+                deferredResult.setResult(ResultUtils.error(e.getCode(), e.getMessage()));
+            } else {
+                deferredResult.setResult(ResultUtils.error(ErrorCode.SYSTEM_ERROR, "部署失败"));
+            }
+        });
+        return deferredResult;
+    }
+
+    /**
+     * 提交异步部署任务
+     *
+     * @param appDeployRequest 部署请求
+     * @param request          请求
+     * @return 部署任务 ID
+     */
+    @PostMapping("/deploy/submit")
+    public BaseResponse<String> submitDeployJob(@RequestBody AppDeployRequest appDeployRequest, HttpServletRequest request) {
+        ThrowUtils.throwIf(appDeployRequest == null, ErrorCode.PARAMS_ERROR);
+        Long appId = appDeployRequest.getAppId();
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
+        User loginUser = userService.getLoginUser(request);
+        DeployJob deployJob = appService.submitDeployJob(appId, loginUser);
+        return ResultUtils.success(deployJob.getJobId());
+    }
+
+    /**
+     * 查询部署任务状态（轮询）
+     *
+     * @param jobId   部署任务 ID
+     * @param request 请求
+     * @return 部署任务状态
+     */
+    @GetMapping("/deploy/job/get")
+    public BaseResponse<DeployJobVO> getDeployJob(@RequestParam String jobId, HttpServletRequest request) {
+        ThrowUtils.throwIf(StrUtil.isBlank(jobId), ErrorCode.PARAMS_ERROR, "任务 ID 不能为空");
+        User loginUser = userService.getLoginUser(request);
+        DeployJob deployJob = deployJobManager.getJob(jobId, loginUser.getId());
+        return ResultUtils.success(deployJob.toVO());
+    }
+
+    /**
+     * 订阅部署任务状态（SSE），每次状态变化推送一次，任务结束后发送 done 事件
+     *
+     * @param jobId   部署任务 ID
+     * @param request 请求
+     * @return 部署任务状态流
+     */
+    @GetMapping(value = "/deploy/job/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> streamDeployJob(@RequestParam String jobId, HttpServletRequest request) {
+        ThrowUtils.throwIf(StrUtil.isBlank(jobId), ErrorCode.PARAMS_ERROR, "任务 ID 不能为空");
+        User loginUser = userService.getLoginUser(request);
+        DeployJob deployJob = deployJobManager.getJob(jobId, loginUser.getId());
+        return deployJob.asFlux()
+                .map(deployJobVO -> ServerSentEvent.<String>builder()
+                        .data(JSONUtil.toJsonStr(deployJobVO))
+                        .build())
+                .concatWith(Mono.just(ServerSentEvent.<String>builder()
+                        .event("done")
+                        .data("")
+                        .build()));
     }
 
     /**
@@ -407,7 +490,7 @@ public class AppController {
         // 6. 生成下载文件名（不建议添加中文内容）
         String downloadFileName = String.valueOf(appId);
         // 7. 调用通用下载服务
-        projectDownloadService.downloadProjectAsZip(sourceDirPath, downloadFileName, response);
+        projectDownloadService.downloadProjectAsZip(sourceDirPath, downloadFileName, request, response);
     }
 
     /**
@@ -419,7 +502,7 @@ public class AppController {
     @PostMapping("/good/list/page/vo")
     @Cacheable(
             value = "good_app_page",
-            key = "T(com.wyb.aicodemotherme.util.CacheKeyUtils).generateKey(#appQueryRequest)",
+            key = "@goodAppPageCache.key(#appQueryRequest)",
             condition = "#appQueryRequest.pageNum <= 10"
     )
     public BaseResponse<Page<AppVO>> listGoodAppVOByPage(@RequestBody AppQueryRequest appQueryRequest) {
@@ -429,20 +512,10 @@ public class AppController {
         Long pageSize = appQueryRequest.getPageSize();
         // 校验每页大小，限制最多20条，防止恶意请求大量数据
         ThrowUtils.throwIf(pageSize > 20, ErrorCode.PARAMS_ERROR, "每页最多查询 20 个应用");
-        //获取请求中的页码参数
-        Long pageNum = appQueryRequest.getPageNum();
         // 设置查询条件：只查询精选应用
         appQueryRequest.setPriority(AppConstant.GOOD_APP_PRIORITY);
-        // 构建查询条件
-        QueryWrapper queryWrapper = appService.getQueryWrapper(appQueryRequest);
-        // 分页查询
-        Page<App> appPage = appService.page(Page.of(pageNum, pageSize), queryWrapper);
-        // 数据转换和封装（创建新的AppVOPage对象，继承原始分页信息）
-        Page<AppVO> appVOPage = new Page<>(pageNum, pageSize, appPage.getTotal());
-        // 将App实体列表转换为AppVO列表（包含关联的用户信息）
-        List<AppVO> appVOList = appService.getAppVOList(appPage.getRecords());
-        // 将转换后的VO列表设置到分页对象中
-        appVOPage.setRecords(appVOList);
+        // 分页查询并转换为 AppVO（loadMore 为 true 时不查询总数）
+        Page<AppVO> appVOPage = appService.listAppVOByPage(appQueryRequest);
         // 返回结果
         return ResultUtils.success(appVOPage);
     }
@@ -6,6 +6,7 @@ import com.wyb.aicodemotherme.annotation.AuthCheck;
 import com.wyb.aicodemotherme.common.BaseResponse;
 import com.wyb.aicodemotherme.common.ResultUtils;
 import com.wyb.aicodemotherme.constant.UserConstant;
+import com.wyb.aicodemotherme.core.history.ChatMessageCodec;
 import com.wyb.aicodemotherme.exception.ErrorCode;
 import com.wyb.aicodemotherme.exception.ThrowUtils;
 import com.wyb.aicodemotherme.model.dto.chathistory.ChatHistoryQueryRequest;
@@ -40,6 +41,7 @@ public class ChatHistoryController {
      * @param appId          应用ID
      * @param pageSize       页面大小
      * @param lastCreateTime 最后一条记录的创建时间
+     * @param lastId         最后一条记录的 id（和 lastCreateTime 组成游标）
      * @param request        请求
      * @return 对话历史分页
      */
@@ -47,9 +49,10 @@ public class ChatHistoryController {
     public BaseResponse<Page<ChatHistory>> listAppChatHistory(@PathVariable Long appId,
                                                               @RequestParam(defaultValue = "10") int pageSize,
                                                               @RequestParam(required = false) LocalDateTime lastCreateTime,
+                                                              @RequestParam(required = false) Long lastId,
                                                               HttpServletRequest request) {
         User loginUser = userService.getLoginUser(request);
-        Page<ChatHistory> result = chatHistoryService.listAppChatHistoryByPage(appId, pageSize, lastCreateTime, loginUser);
+        Page<ChatHistory> result = chatHistoryService.listAppChatHistoryByPage(appId, pageSize, lastCreateTime, lastId, loginUser);
         return ResultUtils.success(result);
     }
 
@@ -73,6 +76,8 @@ public class ChatHistoryController {
         QueryWrapper queryWrapper = chatHistoryService.getQueryWrapper(chatHistoryQueryRequest);
 
         Page<ChatHistory> result = chatHistoryService.page(Page.of(pageNum, pageSize), queryWrapper);
+        // 压缩存储的消息解压后返回
+        ChatMessageCodec.decompressAll(result.getRecords());
         return ResultUtils.success(result);
     }
 
@@ -1,22 +1,44 @@
 package com.wyb.aicodemotherme.controller;
 
 import com.wyb.aicodemotherme.constant.AppConstant;
+import com.wyb.aicodemotherme.core.preview.PreviewFileCache;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.servlet.HandlerMapping;
 
-import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
  * 静态资源访问 本质上就是：把本地生成目录当成一个静态网站根目录来对外提供访问（一个简易版静态资源服务器）
+ * 1. 条件请求：返回 ETag / Last-Modified，浏览器带 If-None-Match / If-Modified-Since 时只 stat 一次文件就返回 304，
+ *    不读取文件内容、不查内存缓存
+ * 2. Range 请求：响应体是 Resource，Spring 会自动按 Range 返回 206
+ * 3. 缓存策略：Vite 构建出的带哈希文件名的资源长期缓存，其余文件每次协商
+ * 4. 零拷贝：容器（Tomcat）支持 sendfile 时，较大的文件直接由内核发送，不经过 JVM 堆
+ * 5. 热点缓存：小文件从内存缓存返回，文本类文件按 Accept-Encoding 返回预先压缩好的 gzip / deflate 版本
  */
 @RestController
 @RequestMapping("/static")
@@ -25,6 +47,29 @@ public class StaticResourceController {
     // 应用生成根目录（用于浏览）
     private static final String PREVIEW_ROOT_DIR = AppConstant.CODE_OUTPUT_ROOT_DIR;
 
+    private static final Path PREVIEW_ROOT_PATH = Path.of(PREVIEW_ROOT_DIR).toAbsolutePath().normalize();
+
+    /**
+     * Vite 构建产物的文件名带内容哈希（例如 assets/index-4f3a2b1c.js），内容变化文件名就会变，可以永久缓存
+     */
+    private static final Pattern HASHED_ASSET_PATTERN = Pattern.compile("/assets/.+-[A-Za-z0-9_-]{8,}\\.[A-Za-z0-9]+$");
+
+    /**
+     * Tomcat sendfile 相关的请求属性
+     */
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * 超过该大小的文件才使用 sendfile，小文件直接写出更快（与 Tomcat DefaultServlet 的默认值一致）
+     */
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
     /**
      * 提供静态资源访问，支持目录重定向
      * 访问格式：http://localhost:8123/api/static/{deployKey}[/{fileName}]
@@ -32,7 +77,8 @@ public class StaticResourceController {
     @GetMapping("/{deployKey}/**")
     public ResponseEntity<Resource> serveStaticResource(
             @PathVariable String deployKey,
-            HttpServletRequest request) {
+            HttpServletRequest request,
+            HttpServletResponse response) {
         try {
             // 获取资源路径
             String resourcePath = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
@@ -47,23 +93,144 @@ public class StaticResourceController {
             if (resourcePath.equals("/")) {
                 resourcePath = "/index.html";
             }
+            // 生成过程中优先返回临时目录里正在写入的文件（边生成边预览）
+            Path stagingPath = resolveStagingPath(deployKey, resourcePath);
+            if (stagingPath != null) {
+                // 半成品内容不允许浏览器缓存，也不做协商
+                return ResponseEntity.ok()
+                        .header("Content-Type", getContentTypeWithCharset(resourcePath))
+                        .cacheControl(CacheControl.noStore())
+                        .body(new FileSystemResource(stagingPath));
+            }
             // 构建文件路径
-            String filePath = PREVIEW_ROOT_DIR + File.separator + deployKey + resourcePath;
-            File file = new File(filePath);
-            // 检查文件是否存在
-            if (!file.exists()) {
+            Path filePath = resolvePreviewPath(deployKey, resourcePath);
+            if (filePath == null) {
+                return ResponseEntity.notFound().build();
+            }
+            // 一次 stat 拿到是否存在、大小和修改时间
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                return ResponseEntity.notFound().build();
+            }
+            if (!attributes.isRegularFile()) {
                 return ResponseEntity.notFound().build();
             }
-            // 返回文件资源
-            Resource resource = new FileSystemResource(file);
-            return ResponseEntity.ok()
-                    .header("Content-Type", getContentTypeWithCharset(filePath))
-                    .body(resource);
+            long length = attributes.size();
+            long lastModified = attributes.lastModifiedTime().toMillis();
+            String eTag = buildETag(length, lastModified);
+            // 先和 If-None-Match / If-Modified-Since 比对（仅 GET/HEAD），命中直接返回 304，不读文件也不压缩
+            if (new ServletWebRequest(request, response).checkNotModified(eTag, lastModified)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(eTag)
+                        .lastModified(lastModified)
+                        .cacheControl(getCacheControl(resourcePath))
+                        .build();
+            }
+            ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                    .header("Content-Type", getContentTypeWithCharset(resourcePath))
+                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                    .eTag(eTag)
+                    .lastModified(lastModified)
+                    .cacheControl(getCacheControl(resourcePath));
+            // 小文件直接从内存缓存返回（Range 请求仍然读磁盘，由 Spring 截取）
+            if (PreviewFileCache.isCacheable(length) && request.getHeader(HttpHeaders.RANGE) == null) {
+                PreviewFileCache.CachedFile cachedFile = PreviewFileCache.get(filePath, lastModified);
+                if (cachedFile != null) {
+                    byte[] body = cachedFile.getContent(null);
+                    if (cachedFile.isCompressed()) {
+                        builder.varyBy(HttpHeaders.ACCEPT_ENCODING);
+                        String encoding = PreviewFileCache.negotiateEncoding(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+                        if (encoding != null) {
+                            body = cachedFile.getContent(encoding);
+                            builder.header(HttpHeaders.CONTENT_ENCODING, encoding);
+                        }
+                    }
+                    return builder.contentLength(body.length).body(new ByteArrayResource(body));
+                }
+            }
+            if (canUseSendfile(request, length)) {
+                // 交给 Tomcat 用 sendfile 零拷贝发送，响应体留空
+                request.setAttribute(SENDFILE_FILENAME_ATTR, filePath.toString());
+                request.setAttribute(SENDFILE_START_ATTR, 0L);
+                request.setAttribute(SENDFILE_END_ATTR, length);
+                return builder.contentLength(length).build();
+            }
+            return builder.body(new FileSystemResource(filePath));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
+    /**
+     * 解析预览文件路径，拒绝 ../ 之类跳出预览目录的访问
+     *
+     * @return 文件路径，越界时返回 null
+     */
+    private Path resolvePreviewPath(String dirName, String resourcePath) {
+        Path path = PREVIEW_ROOT_PATH.resolve(dirName + resourcePath).normalize();
+        return path.startsWith(PREVIEW_ROOT_PATH.resolve(dirName)) ? path : null;
+    }
+
+    /**
+     * 在最新一次生成的临时目录里查找正在写入的文件（同一应用可能有多次重叠的生成，按 runId 取最新的）
+     *
+     * @return 文件路径，没有正在生成的文件时返回 null
+     */
+    private Path resolveStagingPath(String deployKey, String resourcePath) throws IOException {
+        String stagingDirName = deployKey + AppConstant.CODE_OUTPUT_STAGING_SUFFIX;
+        Path stagingRoot = PREVIEW_ROOT_PATH.resolve(stagingDirName).normalize();
+        if (!stagingRoot.startsWith(PREVIEW_ROOT_PATH) || !Files.isDirectory(stagingRoot)) {
+            return null;
+        }
+        List<String> runIds;
+        try (Stream<Path> runDirs = Files.list(stagingRoot)) {
+            runIds = runDirs.map(runDir -> runDir.getFileName().toString())
+                    .sorted(Comparator.reverseOrder())
+                    .toList();
+        } catch (NoSuchFileException e) {
+            // 生成刚好结束，临时目录已被清理
+            return null;
+        }
+        for (String runId : runIds) {
+            Path stagingPath = resolvePreviewPath(stagingDirName + "/" + runId, resourcePath);
+            if (stagingPath != null && Files.isRegularFile(stagingPath)) {
+                return stagingPath;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 根据文件大小和修改时间生成弱 ETag，不需要读取文件内容
+     */
+    private String buildETag(long length, long lastModified) {
+        return "W/\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    /**
+     * 带哈希的构建产物长期缓存，其余文件（例如 index.html）每次都向服务器协商
+     */
+    private CacheControl getCacheControl(String resourcePath) {
+        if (HASHED_ASSET_PATTERN.matcher(resourcePath).find()) {
+            return CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+        }
+        return CacheControl.noCache();
+    }
+
+    /**
+     * 只有完整的 GET 响应才走 sendfile：HEAD 没有响应体，Range / 条件请求交给 Spring 处理
+     */
+    private boolean canUseSendfile(HttpServletRequest request, long length) {
+        return length >= SENDFILE_MIN_SIZE
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))
+                && "GET".equals(request.getMethod())
+                && request.getHeader(HttpHeaders.RANGE) == null
+                && request.getHeader(HttpHeaders.IF_NONE_MATCH) == null
+                && request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) == null;
+    }
+
     /**
      * 根据文件扩展名返回带字符编码的 Content-Type
      */
@@ -73,6 +240,8 @@ public class StaticResourceController {
         if (filePath.endsWith(".js")) return "application/javascript; charset=UTF-8";
         if (filePath.endsWith(".png")) return "image/png";
         if (filePath.endsWith(".jpg")) return "image/jpeg";
-        return "application/octet-stream";
+        return MediaTypeFactory.getMediaType(filePath)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM)
+                .toString();
     }
-}
\ No newline at end of file
+}
@@ -1,18 +1,25 @@
 package com.wyb.aicodemotherme.core;
 
-import cn.hutool.json.JSONUtil;
+import cn.hutool.core.util.StrUtil;
 import com.wyb.aicodemotherme.ai.AiCodeGeneratorService;
 import com.wyb.aicodemotherme.ai.AiCodeGeneratorServiceFactory;
 import com.wyb.aicodemotherme.ai.model.message.AiResponseMessage;
+import com.wyb.aicodemotherme.ai.model.message.BuildLogMessage;
+import com.wyb.aicodemotherme.ai.model.message.BuildStatusMessage;
+import com.wyb.aicodemotherme.ai.model.message.StreamMessage;
 import com.wyb.aicodemotherme.ai.model.message.ToolExecutedMessage;
 import com.wyb.aicodemotherme.ai.model.message.ToolRequestMessage;
 import com.wyb.aicodemotherme.constant.AppConstant;
-import com.wyb.aicodemotherme.core.builder.VueProjectBuilder;
-import com.wyb.aicodemotherme.core.parser.CodeParserExecutor;
+import com.wyb.aicodemotherme.core.builder.VueBuildListener;
+import com.wyb.aicodemotherme.core.builder.VueBuildScheduler;
+import com.wyb.aicodemotherme.core.parser.CodeFenceStreamParser;
 import com.wyb.aicodemotherme.core.saver.CodeFileSaverExecutor;
+import com.wyb.aicodemotherme.core.saver.StreamingCodeFileSaver;
 import com.wyb.aicodemotherme.exception.BusinessException;
 import com.wyb.aicodemotherme.exception.ErrorCode;
 import com.wyb.aicodemotherme.model.enums.CodeGenTypeEnum;
+import com.wyb.aicodemotherme.model.enums.VueBuildPhaseEnum;
+import com.wyb.aicodemotherme.model.enums.VueBuildStatusEnum;
 import dev.langchain4j.model.chat.response.ChatResponse;
 import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.tool.ToolExecution;
@@ -33,15 +40,16 @@ public class AiCodeGeneratorFacade {
     private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
 
     @Resource
-    private VueProjectBuilder vueProjectBuilder;
+    private VueBuildScheduler vueBuildScheduler;
 
     /**
      * 统一入口：根据类型生成并保存代码（流式）
+     * 返回类型化的消息流，进程内不做 JSON 序列化，只在 SSE 出口序列化一次
      *
      * @param userMessage     用户提示词
      * @param codeGenTypeEnum 生成类型
      */
-    public Flux<String> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum,Long appId) {
+    public Flux<StreamMessage> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum,Long appId) {
         if (codeGenTypeEnum == null) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "生成类型为空");
         }
@@ -51,11 +59,11 @@ public class AiCodeGeneratorFacade {
         return switch (codeGenTypeEnum) {
             case HTML -> {
                 Flux<String> codeStream = aiCodeGeneratorService.generateHtmlCodeStream(userMessage);
-                yield processCodeStream(codeStream, CodeGenTypeEnum.HTML,appId);
+                yield processCodeStream(codeStream, CodeGenTypeEnum.HTML,appId).map(AiResponseMessage::new);
             }
             case MULTI_FILE -> {
                 Flux<String> codeStream = aiCodeGeneratorService.generateMultiFileCodeStream(userMessage);
-                yield processCodeStream(codeStream, CodeGenTypeEnum.MULTI_FILE,appId);
+                yield processCodeStream(codeStream, CodeGenTypeEnum.MULTI_FILE,appId).map(AiResponseMessage::new);
             }
             case VUE_PROJECT -> {
                 TokenStream tokenStream = aiCodeGeneratorService.generateVueProjectCodeStream(appId,userMessage);
@@ -69,23 +77,24 @@ public class AiCodeGeneratorFacade {
     }
 
     /**
-     * 将 TokenStream 转换为 Flux<String>，并传递工具调用信息（返回给前端）并将消息转为json格式的
+     * 将 TokenStream 转换为 Flux<StreamMessage>，并传递工具调用信息（返回给前端）
+     * 消息直接以对象形式在进程内流转，避免每个 token 都 JSON 序列化再反序列化
      *
      * @param tokenStream TokenStream 对象
-     * @return Flux<String> 流式响应
+     * @return Flux<StreamMessage> 流式响应
      */
-    private Flux<String> processTokenStream(TokenStream tokenStream,Long appId) {
+    private Flux<StreamMessage> processTokenStream(TokenStream tokenStream,Long appId) {
 
         //Flux.create 允许你手动往流里推数据：用 sink.next(...) 推一条，用 sink.complete() 结束，用 sink.error(...) 报错终止。
         return Flux.create(sink -> {
             //AI 每生成一点文本（可能一个 token，也可能一小段），就回调 onPartialResponse。
             //你把 partialResponse 包装成 AiResponseMessage（比如里面 type=ai_response）。
-            //再序列化为 JSON 推给 sink.next(...)。输出例如：{type:"ai_response", data:"..."}的格式
+            //再直接推给 sink.next(...)（类型为 ai_response），由下游按类型处理
             //前端就能边生成边显示，而不是等模型全部说完。
             tokenStream.onPartialResponse((String partialResponse) -> {
                         AiResponseMessage aiResponseMessage = new AiResponseMessage(partialResponse);
-                        //把结构化对象序列化成 JSON推送进 Flux 流,下游（前端 / 消息处理器）会实时收到
-                        sink.next(JSONUtil.toJsonStr(aiResponseMessage));
+                        //把结构化对象推送进 Flux 流,下游（消息处理器）会实时收到
+                        sink.next(aiResponseMessage);
                     })
 
                     //这是非常关键的一点：
@@ -99,28 +108,37 @@ public class AiCodeGeneratorFacade {
                     //index：当前 tool call 在一次对话中的序号,toolExecutionRequest：当前阶段的工具调用信息（可能不完整）
                     .onPartialToolExecutionRequest((index, toolExecutionRequest) -> {
                         ToolRequestMessage toolRequestMessage = new ToolRequestMessage(toolExecutionRequest);
-                        sink.next(JSONUtil.toJsonStr(toolRequestMessage));
+                        sink.next(toolRequestMessage);
                     })
 
                     //工具真正执行完了（比如文件写入成功/失败），会触发这个回调。
-                    //你再推一个 {type:"tool_executed", ...} 给前端。
+                    //你再推一个 tool_executed 类型的消息给下游。
                     //前端可以用来展示“✅ 已写入 src/main.js”或“❌ 写入失败”。
                     .onToolExecuted((ToolExecution toolExecution) -> {
                         ToolExecutedMessage toolExecutedMessage = new ToolExecutedMessage(toolExecution);
-                        sink.next(JSONUtil.toJsonStr(toolExecutedMessage));
+                        sink.next(toolExecutedMessage);
                     })
 
                     //这里表达的是一个明确的业务逻辑：
                     //AI 输出结束（包括文本 + 工具调用都结束了）
                     //说明“项目代码生成完毕了”
-                    //你接着同步执行 buildProject(...)（npm install + npm run build）
-                    //构建完成后再 sink.complete()，告诉前端：流结束了
+                    //把构建（npm install + npm run build）交给构建调度器排队执行，不占用 LLM 的回调线程
+                    //构建状态（排队中 / 构建中 / 成功 / 失败）和构建日志实时推给前端，构建结束后再 sink.complete()，告诉前端：流结束了
                     //✅ 优点：前端收到结束信号时，项目已经构建好，预览（dist）目录也已经生成。
                     .onCompleteResponse((ChatResponse response) -> {
-                        // 执行 Vue 项目构建（同步执行，确保预览时项目已就绪）
                         String projectPath = AppConstant.CODE_OUTPUT_ROOT_DIR + File.separator + "vue_project_" + appId;
-                        vueProjectBuilder.buildProject(projectPath);
-                        sink.complete();
+                        vueBuildScheduler.submit(projectPath, VueBuildScheduler.BuildPriority.NORMAL, new VueBuildListener() {
+                                    @Override
+                                    public void onStatus(VueBuildStatusEnum status) {
+                                        sink.next(new BuildStatusMessage(status));
+                                    }
+
+                                    @Override
+                                    public void onOutput(VueBuildPhaseEnum phase, String line) {
+                                        sink.next(new BuildLogMessage(phase, line));
+                                    }
+                                })
+                                .whenComplete((success, error) -> sink.complete());
                     })
 
                     .onError((Throwable error) -> {
@@ -139,26 +157,33 @@ public class AiCodeGeneratorFacade {
      * @return 流式响应
      */
     private Flux<String> processCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenType,Long appId) {
-        StringBuilder codeBuilder = new StringBuilder();
+        // 流式保存器：代码块内容边生成边写入临时文件，代码块闭合后原子替换到生成目录，预览可以提前看到
+        StreamingCodeFileSaver streamingSaver = CodeFileSaverExecutor.createStreamingSaver(codeGenType, appId);
+        // 流式代码块解析器：每个 chunk 到达就喂给状态机，解析出的代码块直接交给保存器
+        CodeFenceStreamParser fenceParser = new CodeFenceStreamParser(streamingSaver);
         return codeStream
-            .doOnNext(chunk -> {
-                // 实时收集代码片段
-                codeBuilder.append(chunk);
-            })
+            .doOnNext(fenceParser::append)
             .doOnComplete(() -> {
-                // 流式返回完成后保存代码
+                // 流式返回完成后处理未闭合的代码块，并校验 HTML 是否已保存
                 try {
-                    String completeCode = codeBuilder.toString();
-                    // 使用执行器解析代码
-                    Object parsedResult = CodeParserExecutor.executeParser(completeCode, codeGenType);
-                    // 使用执行器保存代码
-                    File savedDir = CodeFileSaverExecutor.executeSaver(parsedResult, codeGenType,appId);
-                    log.info("保存成功，路径为：{}", savedDir.getAbsolutePath());
+                    fenceParser.finish();
+                    if (!fenceParser.hasBlock(CodeFenceStreamParser.LANGUAGE_HTML)) {
+                        String plainText = fenceParser.getPlainText();
+                        // HTML 模式下没有代码块时，将整个内容作为HTML（与 HtmlCodeParser 的兜底逻辑一致）
+                        if (codeGenType == CodeGenTypeEnum.HTML && StrUtil.isNotBlank(plainText)) {
+                            CodeFileSaverExecutor.executeBlockSaver(CodeFenceStreamParser.LANGUAGE_HTML, plainText, codeGenType, appId);
+                        } else {
+                            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "html代码不能为空");
+                        }
+                    }
+                    log.info("保存成功，路径为：{}", streamingSaver.getTargetDir().toAbsolutePath());
                 } catch (Exception e) {
                     log.error("保存失败: {}", e.getMessage(), e);
                 }
             })
-            .doOnError(error -> log.error("流式处理出错: {}", error.getMessage(), error));
+            .doOnError(error -> log.error("流式处理出错: {}", error.getMessage(), error))
+            // 无论完成、出错还是取消都清理临时目录
+            .doFinally(signalType -> streamingSaver.close());
     }
 
 }
@@ -0,0 +1,172 @@
+package com.wyb.aicodemotherme.core.builder;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.crypto.digest.DigestAlgorithm;
+import cn.hutool.crypto.digest.Digester;
+import com.wyb.aicodemotherme.config.VueBuildConfig;
+import com.wyb.aicodemotherme.constant.AppConstant;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 共享 node_modules 缓存（按内容寻址）
+ * 生成的 Vue 项目几乎都使用同一份 package.json，这里用 package.json + package-lock.json 的哈希作为 key：
+ * 1. 命中：把缓存里的 node_modules 以软链接的方式挂到项目下，完全跳过 npm install（不需要联网）
+ * 2. 未命中：项目正常 npm install 后，把 node_modules 移入缓存目录，再软链接回项目
+ * 缓存目录结构：tmp/dependency_cache/{hash}/node_modules，{hash}/.complete 表示缓存已完整写入
+ */
+@Slf4j
+@Component
+public class NodeModulesCache {
+
+    private static final String NODE_MODULES = "node_modules";
+
+    private static final String COMPLETE_MARKER = ".complete";
+
+    @Resource
+    private VueBuildConfig vueBuildConfig;
+
+    /**
+     * 每个缓存 key 一把锁，避免多个项目同时写入同一份缓存
+     */
+    private final ConcurrentHashMap<String, Object> keyLocks = new ConcurrentHashMap<>();
+
+    /**
+     * 计算项目的依赖缓存 key
+     *
+     * @param projectDir 项目目录
+     * @return 缓存 key，未开启缓存或读取失败时返回 null
+     */
+    public String computeKey(File projectDir) {
+        if (!Boolean.TRUE.equals(vueBuildConfig.getDependencyCacheEnabled())) {
+            return null;
+        }
+        try {
+            MessageDigest digest = new Digester(DigestAlgorithm.SHA256).getDigest();
+            digest.update(Files.readAllBytes(new File(projectDir, "package.json").toPath()));
+            File lockFile = new File(projectDir, "package-lock.json");
+            if (lockFile.isFile()) {
+                digest.update((byte) 0);
+                digest.update(Files.readAllBytes(lockFile.toPath()));
+            }
+            return HexUtil.encodeHexStr(digest.digest());
+        } catch (IOException e) {
+            log.warn("计算依赖缓存 key 失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 命中缓存时把共享的 node_modules 链接到项目下
+     *
+     * @param projectDir 项目目录
+     * @param cacheKey   缓存 key
+     * @return 是否命中（命中后可以跳过 npm install）
+     */
+    public boolean linkIfCached(File projectDir, String cacheKey) {
+        if (cacheKey == null) {
+            return false;
+        }
+        Path entryDir = getEntryDir(cacheKey);
+        if (!Files.exists(entryDir.resolve(COMPLETE_MARKER))) {
+            return false;
+        }
+        try {
+            linkNodeModules(projectDir.toPath(), entryDir.resolve(NODE_MODULES));
+            log.info("命中依赖缓存 {}，跳过 npm install: {}", cacheKey, projectDir.getAbsolutePath());
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            // 例如 Windows 下没有创建软链接的权限，退回到正常安装
+            log.warn("链接依赖缓存失败，改为正常安装: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * npm install 成功后把项目的 node_modules 存入缓存，并换成指向缓存的链接
+     *
+     * @param projectDir 项目目录
+     * @param cacheKey   安装前计算的缓存 key
+     */
+    public void store(File projectDir, String cacheKey) {
+        if (cacheKey == null) {
+            return;
+        }
+        Path projectNodeModules = projectDir.toPath().resolve(NODE_MODULES);
+        if (!Files.isDirectory(projectNodeModules) || Files.isSymbolicLink(projectNodeModules)) {
+            return;
+        }
+        Path entryDir = getEntryDir(cacheKey);
+        synchronized (keyLocks.computeIfAbsent(cacheKey, key -> new Object())) {
+            try {
+                if (!Files.exists(entryDir.resolve(COMPLETE_MARKER))) {
+                    // 先移到临时目录写完整，再整体改名，其他项目不会看到写了一半的缓存
+                    Path tempDir = Path.of(entryDir + ".tmp-" + IdUtil.fastSimpleUUID());
+                    Files.createDirectories(tempDir);
+                    Files.move(projectNodeModules, tempDir.resolve(NODE_MODULES));
+                    Files.createFile(tempDir.resolve(COMPLETE_MARKER));
+                    moveAtomically(tempDir, entryDir);
+                    log.info("依赖已存入缓存 {}", cacheKey);
+                }
+                linkNodeModules(projectDir.toPath(), entryDir.resolve(NODE_MODULES));
+            } catch (IOException | UnsupportedOperationException e) {
+                log.warn("写入依赖缓存失败，项目继续使用自己的 node_modules: {}", e.getMessage());
+                return;
+            }
+        }
+        // npm install 可能新生成了 package-lock.json，为安装后的 key 建一个别名，下次构建同一项目也能命中
+        String installedKey = computeKey(projectDir);
+        if (installedKey != null && !installedKey.equals(cacheKey)) {
+            Path aliasDir = getEntryDir(installedKey);
+            try {
+                if (!Files.exists(aliasDir, LinkOption.NOFOLLOW_LINKS)) {
+                    Files.createSymbolicLink(aliasDir, entryDir.getFileName());
+                }
+            } catch (IOException | UnsupportedOperationException e) {
+                log.warn("创建依赖缓存别名失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    private Path getEntryDir(String cacheKey) {
+        return Path.of(AppConstant.DEPENDENCY_CACHE_ROOT_DIR, cacheKey);
+    }
+
+    /**
+     * 把项目下的 node_modules 替换为指向缓存的软链接
+     */
+    private static void linkNodeModules(Path projectDir, Path cachedNodeModules) throws IOException {
+        Path link = projectDir.resolve(NODE_MODULES);
+        if (Files.isSymbolicLink(link)) {
+            if (Files.readSymbolicLink(link).equals(cachedNodeModules)) {
+                return;
+            }
+            // 只删除链接本身，不能删到链接指向的缓存
+            Files.delete(link);
+        } else if (Files.exists(link)) {
+            FileUtil.del(link);
+        }
+        Files.createSymbolicLink(link, cachedNodeModules);
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.wyb.aicodemotherme.core.builder;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * 进程输出环形缓冲区
+ * 只保留最近的若干行输出，构建失败时用于打印错误上下文，不会因为 npm 输出过多占满内存
+ */
+public class ProcessOutputBuffer {
+
+    private final int capacity;
+
+    private final ArrayDeque<String> lines;
+
+    public ProcessOutputBuffer(int capacity) {
+        this.capacity = capacity;
+        this.lines = new ArrayDeque<>(capacity);
+    }
+
+    /**
+     * 追加一行输出，超出容量时丢弃最早的一行
+     *
+     * @param line 输出行
+     */
+    public synchronized void add(String line) {
+        if (lines.size() == capacity) {
+            lines.pollFirst();
+        }
+        lines.addLast(line);
+    }
+
+    /**
+     * 获取缓冲区中的全部输出（按时间顺序）
+     *
+     * @return 输出行
+     */
+    public synchronized List<String> snapshot() {
+        return List.copyOf(lines);
+    }
+}
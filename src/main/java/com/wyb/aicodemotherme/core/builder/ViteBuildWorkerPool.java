@@ -0,0 +1,263 @@
+package com.wyb.aicodemotherme.core.builder;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.resource.ResourceUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.wyb.aicodemotherme.config.VueBuildConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * 常驻 Vite 构建 worker 池（可选模式，app.vue-build.worker-pool-enabled 开启）
+ * 每次 npm run build 都要冷启动 npm → node → vite 并重新初始化插件，对我们生成的小项目来说这部分占了构建时间的大头
+ * 这里维护几个长期运行的 Node 进程，通过 stdin / stdout 按行发送构建任务（项目路径），vite 和插件只在进程里加载一次
+ * worker 不可用（未开启、Node 启动失败、进程崩溃）时返回 null，由调用方退回到 npm run build
+ */
+@Slf4j
+@Component
+public class ViteBuildWorkerPool {
+
+    /**
+     * worker 输出结果行的前缀，其余输出都是 vite 自身的日志
+     */
+    private static final String RESULT_PREFIX = "@@vite-build-result@@";
+
+    private static final String WORKER_SCRIPT_RESOURCE = "vite-worker/build-worker.mjs";
+
+    @Resource
+    private VueBuildConfig vueBuildConfig;
+
+    /**
+     * 空闲的 worker
+     */
+    private final BlockingQueue<ViteBuildWorker> idleWorkers = new LinkedBlockingQueue<>();
+
+    private final List<ViteBuildWorker> allWorkers = new CopyOnWriteArrayList<>();
+
+    private File workerScript;
+
+    @PostConstruct
+    public void init() {
+        if (!Boolean.TRUE.equals(vueBuildConfig.getWorkerPoolEnabled())) {
+            return;
+        }
+        try {
+            // 脚本在 jar 包里，Node 需要从文件系统读取，启动时释放到临时目录
+            workerScript = new File(System.getProperty("user.dir") + "/tmp/vite_worker/build-worker.mjs");
+            FileUtil.writeString(ResourceUtil.readUtf8Str(WORKER_SCRIPT_RESOURCE), workerScript, StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            log.error("释放 Vite 构建 worker 脚本失败，使用 npm run build 构建: {}", e.getMessage());
+            return;
+        }
+        int poolSize = Math.max(1, vueBuildConfig.getWorkerPoolSize());
+        for (int i = 0; i < poolSize; i++) {
+            ViteBuildWorker worker = new ViteBuildWorker(i + 1);
+            allWorkers.add(worker);
+            idleWorkers.add(worker);
+        }
+        log.info("Vite 构建 worker 池初始化完成，worker 数: {}", poolSize);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        allWorkers.forEach(ViteBuildWorker::stop);
+    }
+
+    /**
+     * 是否开启了 worker 池
+     */
+    public boolean isEnabled() {
+        return !allWorkers.isEmpty();
+    }
+
+    /**
+     * 使用常驻 worker 构建项目
+     *
+     * @param projectDir     项目目录
+     * @param timeoutSeconds 超时时间（秒）
+     * @param outputConsumer 构建输出行回调
+     * @return 是否构建成功；worker 不可用时返回 null，调用方应退回到 npm run build
+     */
+    public Boolean build(File projectDir, int timeoutSeconds, Consumer<String> outputConsumer) {
+        if (!isEnabled()) {
+            return null;
+        }
+        ViteBuildWorker worker;
+        try {
+            worker = idleWorkers.poll(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (worker == null) {
+            log.warn("等待空闲的 Vite 构建 worker 超时");
+            return null;
+        }
+        try {
+            return worker.build(projectDir, timeoutSeconds, outputConsumer);
+        } finally {
+            idleWorkers.add(worker);
+        }
+    }
+
+    /**
+     * 单个常驻 Node 进程，进程退出或构建次数达到上限后在下次使用时重新启动
+     */
+    private class ViteBuildWorker {
+
+        private final int index;
+
+        private volatile Process process;
+
+        private BufferedWriter stdin;
+
+        private int completedBuilds;
+
+        private volatile CompletableFuture<String> pendingResult;
+
+        /**
+         * 当前构建任务的输出回调
+         */
+        private volatile Consumer<String> pendingOutputConsumer;
+
+        private ViteBuildWorker(int index) {
+            this.index = index;
+        }
+
+        private Boolean build(File projectDir, int timeoutSeconds, Consumer<String> outputConsumer) {
+            try {
+                ensureStarted();
+            } catch (IOException e) {
+                log.error("启动 Vite 构建 worker 失败: {}", e.getMessage());
+                return null;
+            }
+            CompletableFuture<String> result = new CompletableFuture<>();
+            pendingResult = result;
+            pendingOutputConsumer = outputConsumer;
+            try {
+                JSONObject request = new JSONObject().set("projectPath", projectDir.getAbsolutePath());
+                stdin.write(request.toString());
+                stdin.newLine();
+                stdin.flush();
+                JSONObject response = JSONUtil.parseObj(result.get(timeoutSeconds, TimeUnit.SECONDS));
+                completedBuilds++;
+                if (response.getBool("success", false)) {
+                    log.info("Vite 构建 worker-{} 构建成功: {}", index, projectDir.getAbsolutePath());
+                    return true;
+                }
+                log.error("Vite 构建 worker-{} 构建失败: {}", index, response.getStr("error"));
+                return false;
+            } catch (TimeoutException e) {
+                log.error("Vite 构建 worker-{} 构建超时（{}秒），终止 worker", index, timeoutSeconds);
+                stop();
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stop();
+                return false;
+            } catch (IOException | ExecutionException e) {
+                // worker 进程异常退出，本次交给 npm run build 重试
+                log.error("Vite 构建 worker-{} 异常: {}", index, e.getMessage());
+                stop();
+                return null;
+            } finally {
+                pendingResult = null;
+                pendingOutputConsumer = null;
+            }
+        }
+
+        private void ensureStarted() throws IOException {
+            if (process != null && process.isAlive() && completedBuilds < vueBuildConfig.getWorkerMaxBuilds()) {
+                return;
+            }
+            // 定期回收进程，避免长期运行累积内存
+            stop();
+            process = new ProcessBuilder("node", workerScript.getAbsolutePath())
+                    .directory(workerScript.getParentFile())
+                    .redirectErrorStream(true)
+                    .start();
+            completedBuilds = 0;
+            stdin = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+            Process currentProcess = process;
+            Thread readerThread = new Thread(() -> readOutput(currentProcess), "vite-worker-" + index + "-reader");
+            readerThread.setDaemon(true);
+            readerThread.start();
+            log.info("Vite 构建 worker-{} 已启动，pid: {}", index, process.pid());
+        }
+
+        /**
+         * 持续读取 worker 输出，结果行交给等待中的构建，其余行作为日志输出
+         */
+        private void readOutput(Process workerProcess) {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(workerProcess.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    CompletableFuture<String> result = pendingResult;
+                    if (line.startsWith(RESULT_PREFIX)) {
+                        if (result != null) {
+                            result.complete(line.substring(RESULT_PREFIX.length()));
+                        }
+                    } else {
+                        log.info("[vite-worker-{}] {}", index, line);
+                        forwardOutput(line);
+                    }
+                }
+            } catch (IOException e) {
+                log.debug("读取 Vite 构建 worker-{} 输出结束: {}", index, e.getMessage());
+            }
+            // 主动停止后旧进程的读取线程也会走到这里，只处理当前进程的退出
+            CompletableFuture<String> result = pendingResult;
+            if (result != null && workerProcess == process) {
+                result.completeExceptionally(new IOException("Vite 构建 worker 进程已退出"));
+            }
+        }
+
+        private void forwardOutput(String line) {
+            Consumer<String> outputConsumer = pendingOutputConsumer;
+            if (outputConsumer == null) {
+                return;
+            }
+            try {
+                outputConsumer.accept(line);
+            } catch (Exception e) {
+                log.warn("处理构建输出失败: {}", e.getMessage());
+            }
+        }
+
+        private void stop() {
+            if (process == null) {
+                return;
+            }
+            try {
+                stdin.close();
+            } catch (IOException ignored) {
+                // 进程可能已经退出
+            }
+            process.destroyForcibly();
+            process = null;
+            stdin = null;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.wyb.aicodemotherme.core.builder;
+
+import com.wyb.aicodemotherme.model.enums.VueBuildPhaseEnum;
+import com.wyb.aicodemotherme.model.enums.VueBuildStatusEnum;
+
+/**
+ * Vue 项目构建监听器
+ */
+@FunctionalInterface
+public interface VueBuildListener {
+
+    /**
+     * 构建状态变化（排队中 / 构建中 / 成功 / 失败）
+     *
+     * @param status 构建状态
+     */
+    void onStatus(VueBuildStatusEnum status);
+
+    /**
+     * 构建进程输出的一行日志（包括各阶段的耗时）
+     *
+     * @param phase 构建阶段
+     * @param line  日志内容
+     */
+    default void onOutput(VueBuildPhaseEnum phase, String line) {
+    }
+}
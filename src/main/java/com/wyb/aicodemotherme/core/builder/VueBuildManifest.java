@@ -0,0 +1,131 @@
+package com.wyb.aicodemotherme.core.builder;
+
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.crypto.digest.DigestAlgorithm;
+import cn.hutool.crypto.digest.Digester;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Vue 项目构建清单
+ * 对影响构建产物的源文件（src/、public/、index.html、package.json、vite.config.js）计算哈希，
+ * 构建成功后写到 dist 旁边的清单文件里；下次构建时哈希一致且 dist 还在，就可以直接跳过构建
+ */
+@Slf4j
+public final class VueBuildManifest {
+
+    /**
+     * 清单文件名（位于项目根目录，与 dist 同级）
+     */
+    public static final String MANIFEST_FILE_NAME = ".build-manifest";
+
+    /**
+     * 参与哈希计算的构建输入（目录会递归包含所有文件）
+     */
+    private static final List<String> BUILD_INPUTS = List.of(
+            "src", "public", "index.html", "package.json", "vite.config.js"
+    );
+
+    private VueBuildManifest() {
+    }
+
+    /**
+     * 计算项目当前的构建输入哈希
+     *
+     * @param projectDir 项目目录
+     * @return 哈希值，读取失败时返回 null
+     */
+    public static String computeHash(File projectDir) {
+        Path projectRoot = projectDir.toPath();
+        MessageDigest digest = new Digester(DigestAlgorithm.SHA256).getDigest();
+        try {
+            for (String input : BUILD_INPUTS) {
+                Path inputPath = projectRoot.resolve(input);
+                if (Files.isDirectory(inputPath)) {
+                    // 按路径排序，保证同样的文件集合得到同样的哈希
+                    try (Stream<Path> paths = Files.walk(inputPath)) {
+                        List<Path> files = paths.filter(Files::isRegularFile).sorted().toList();
+                        for (Path file : files) {
+                            updateDigest(digest, projectRoot, file);
+                        }
+                    }
+                } else if (Files.isRegularFile(inputPath)) {
+                    updateDigest(digest, projectRoot, inputPath);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("计算构建清单哈希失败: {}", e.getMessage());
+            return null;
+        }
+        return HexUtil.encodeHexStr(digest.digest());
+    }
+
+    /**
+     * 判断 dist 是否已经是当前源码的构建结果
+     *
+     * @param projectDir 项目目录
+     * @param hash       当前构建输入哈希
+     * @return 是否可以跳过构建
+     */
+    public static boolean isUpToDate(File projectDir, String hash) {
+        if (hash == null || !new File(projectDir, "dist/index.html").isFile()) {
+            return false;
+        }
+        Path manifestPath = projectDir.toPath().resolve(MANIFEST_FILE_NAME);
+        try {
+            return Files.isRegularFile(manifestPath)
+                    && hash.equals(Files.readString(manifestPath, StandardCharsets.UTF_8).trim());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 构建成功后写入清单
+     *
+     * @param projectDir 项目目录
+     * @param hash       本次构建对应的输入哈希
+     */
+    public static void write(File projectDir, String hash) {
+        if (hash == null) {
+            return;
+        }
+        try {
+            Files.writeString(projectDir.toPath().resolve(MANIFEST_FILE_NAME), hash, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.warn("写入构建清单失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 删除清单，构建开始前调用，避免构建失败后留下与 dist 不一致的清单
+     *
+     * @param projectDir 项目目录
+     */
+    public static void invalidate(File projectDir) {
+        try {
+            Files.deleteIfExists(projectDir.toPath().resolve(MANIFEST_FILE_NAME));
+        } catch (IOException e) {
+            log.warn("删除构建清单失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 把文件相对路径和内容都计入哈希，文件改名 / 移动也会触发重新构建
+     */
+    private static void updateDigest(MessageDigest digest, Path projectRoot, Path file) throws IOException {
+        String relativePath = projectRoot.relativize(file).toString().replace(File.separatorChar, '/');
+        byte[] content = Files.readAllBytes(file);
+        // 路径 + 长度作为前缀，避免相邻文件内容拼接后产生歧义
+        digest.update((relativePath + '\0' + content.length + '\0').getBytes(StandardCharsets.UTF_8));
+        digest.update(content);
+    }
+}
@@ -0,0 +1,216 @@
+package com.wyb.aicodemotherme.core.builder;
+
+import com.wyb.aicodemotherme.config.VueBuildConfig;
+import com.wyb.aicodemotherme.model.enums.VueBuildPhaseEnum;
+import com.wyb.aicodemotherme.model.enums.VueBuildStatusEnum;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Vue 项目构建调度器
+ * 1. 固定数量的构建线程，限制同时运行的 npm 进程数
+ * 2. 优先级队列：用户等待中的部署优先于生成后的预览构建，后台构建最后
+ * 3. 按项目去重：同一项目已经在排队的构建会被合并，多个调用方共享同一次构建结果
+ * 4. 构建监听：调用方可以把排队 / 构建中 / 成功 / 失败以及构建日志推送给前端
+ */
+@Slf4j
+@Component
+public class VueBuildScheduler {
+
+    /**
+     * 构建优先级（越靠前越优先）
+     */
+    public enum BuildPriority {
+        /**
+         * 用户同步等待的构建（部署）
+         */
+        HIGH,
+        /**
+         * 生成完成后的预览构建
+         */
+        NORMAL,
+        /**
+         * 后台构建
+         */
+        LOW
+    }
+
+    @Resource
+    private VueProjectBuilder vueProjectBuilder;
+
+    @Resource
+    private VueBuildConfig vueBuildConfig;
+
+    /**
+     * 还在排队（未开始执行）的构建任务，key 为项目路径
+     */
+    private final ConcurrentHashMap<String, BuildTask> queuedTasks = new ConcurrentHashMap<>();
+
+    /**
+     * 提交顺序，优先级相同时先提交先执行
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    private ThreadPoolExecutor buildExecutor;
+
+    @PostConstruct
+    public void init() {
+        int maxConcurrentBuilds = Math.max(1, vueBuildConfig.getMaxConcurrentBuilds());
+        AtomicInteger threadIndex = new AtomicInteger();
+        // 使用 execute 提交，队列里的元素就是 BuildTask 本身，可以按优先级排序
+        buildExecutor = new ThreadPoolExecutor(maxConcurrentBuilds, maxConcurrentBuilds,
+                0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "vue-builder-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        log.info("Vue 构建调度器初始化完成，最大并发构建数: {}", maxConcurrentBuilds);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        buildExecutor.shutdownNow();
+    }
+
+    /**
+     * 提交构建任务
+     *
+     * @param projectPath 项目根目录路径
+     * @param priority    优先级
+     * @return 构建结果（是否成功）
+     */
+    public CompletableFuture<Boolean> submit(String projectPath, BuildPriority priority) {
+        return submit(projectPath, priority, null);
+    }
+
+    /**
+     * 提交构建任务，同一项目已有排队中的任务时直接合并
+     *
+     * @param projectPath    项目根目录路径
+     * @param priority       优先级
+     * @param buildListener  构建监听器（可为 null）
+     * @return 构建结果（是否成功）
+     */
+    public CompletableFuture<Boolean> submit(String projectPath, BuildPriority priority,
+                                             VueBuildListener buildListener) {
+        // 先推送排队状态：监听器在 compute 中才注册，构建线程不可能先推送构建中状态
+        notifyListener(buildListener, VueBuildStatusEnum.QUEUED);
+        // compute 里只做“查找或创建 + 注册监听器”，回调和线程池操作都放到 compute 之外，不在持有桶锁时执行
+        AtomicBoolean raisePriority = new AtomicBoolean(false);
+        BuildTask task = queuedTasks.compute(projectPath, (path, existing) -> {
+            if (existing != null) {
+                existing.addListener(buildListener);
+                raisePriority.set(priority.compareTo(existing.priority) < 0);
+                return existing;
+            }
+            BuildTask newTask = new BuildTask(path, priority, sequence.incrementAndGet());
+            newTask.addListener(buildListener);
+            return newTask;
+        });
+        // 合并进来的请求优先级更高时提升排队任务的优先级（移出队列后修改、重新入队才能重新排序；已开始执行时 remove 返回 false）
+        if (raisePriority.get()) {
+            synchronized (task) {
+                if (priority.compareTo(task.priority) < 0 && buildExecutor.remove(task)) {
+                    task.priority = priority;
+                    buildExecutor.execute(task);
+                }
+            }
+        }
+        if (task.submitted.compareAndSet(false, true)) {
+            buildExecutor.execute(task);
+            log.info("Vue 项目构建已加入队列: {}，优先级: {}，当前排队数: {}",
+                    projectPath, priority, buildExecutor.getQueue().size());
+        } else {
+            log.info("Vue 项目已在构建队列中，合并本次构建请求: {}", projectPath);
+        }
+        return task.future;
+    }
+
+    private static void notifyListener(VueBuildListener listener, VueBuildStatusEnum status) {
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.onStatus(status);
+        } catch (Exception e) {
+            log.error("构建状态回调执行失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private static void notifyOutput(VueBuildListener listener, VueBuildPhaseEnum phase, String line) {
+        try {
+            listener.onOutput(phase, line);
+        } catch (Exception e) {
+            log.error("构建日志回调执行失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 单个构建任务
+     */
+    private class BuildTask implements Runnable, Comparable<BuildTask> {
+
+        private final String projectPath;
+
+        private volatile BuildPriority priority;
+
+        private final long seq;
+
+        private final AtomicBoolean submitted = new AtomicBoolean(false);
+
+        private final List<VueBuildListener> listeners = new CopyOnWriteArrayList<>();
+
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        private BuildTask(String projectPath, BuildPriority priority, long seq) {
+            this.projectPath = projectPath;
+            this.priority = priority;
+            this.seq = seq;
+        }
+
+        private void addListener(VueBuildListener listener) {
+            if (listener != null) {
+                listeners.add(listener);
+            }
+        }
+
+        @Override
+        public void run() {
+            // 开始执行后移出排队表，之后再提交同一项目会排一次新的构建（源码可能又变了）
+            queuedTasks.remove(projectPath, this);
+            listeners.forEach(listener -> notifyListener(listener, VueBuildStatusEnum.BUILDING));
+            boolean success = false;
+            try {
+                success = vueProjectBuilder.buildProject(projectPath,
+                        (phase, line) -> listeners.forEach(listener -> notifyOutput(listener, phase, line)));
+            } catch (Exception e) {
+                log.error("构建 Vue 项目时发生异常: {}", e.getMessage(), e);
+            }
+            VueBuildStatusEnum finalStatus = success ? VueBuildStatusEnum.SUCCESS : VueBuildStatusEnum.FAILED;
+            listeners.forEach(listener -> notifyListener(listener, finalStatus));
+            future.complete(success);
+        }
+
+        @Override
+        public int compareTo(BuildTask other) {
+            int result = priority.compareTo(other.priority);
+            return result != 0 ? result : Long.compare(seq, other.seq);
+        }
+    }
+}
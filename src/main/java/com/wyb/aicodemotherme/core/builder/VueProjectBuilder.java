@@ -1,11 +1,21 @@
 package com.wyb.aicodemotherme.core.builder;
 
 import cn.hutool.core.util.RuntimeUtil;
+import com.wyb.aicodemotherme.core.preview.PreviewFileCache;
+import com.wyb.aicodemotherme.model.enums.VueBuildPhaseEnum;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * 在某个 Vue 项目目录里执行：在服务器上执行 npm install + npm run build，确保生成 dist
@@ -14,39 +24,39 @@ import java.util.concurrent.TimeUnit;
 @Component
 public class VueProjectBuilder {
 
-
     /**
-     * 异步构建项目（不阻塞主流程）
-     *
-     * @param projectPath 项目路径
+     * 每条命令保留的最近输出行数，失败时打印到日志
      */
-    public void buildProjectAsync(String projectPath) {
-        // 在单独的线程中执行构建，避免阻塞主流程
-        Thread.ofVirtual().name("vue-builder-" + System.currentTimeMillis()).start(() -> {
-            try {
-                buildProject(projectPath);
-            } catch (Exception e) {
-                log.error("异步构建 Vue 项目时发生异常: {}", e.getMessage(), e);
-            }
-        });
-    }
+    private static final int OUTPUT_BUFFER_LINES = 200;
+
+    @Resource
+    private NodeModulesCache nodeModulesCache;
+
+    @Resource
+    private ViteBuildWorkerPool viteBuildWorkerPool;
 
     /**
      * 执行 npm install 命令
      */
-    private boolean executeNpmInstall(File projectDir) {
+    private boolean executeNpmInstall(File projectDir, Consumer<String> outputConsumer) {
         log.info("执行 npm install...");
-        String command = String.format("%s install", buildCommand("npm"));
-        return executeCommand(projectDir, command, 300); // 5分钟超时
+        // 优先使用本地 npm 缓存，离线时也能安装
+        String command = String.format("%s install --prefer-offline", buildCommand("npm"));
+        return executeCommand(projectDir, command, 300, outputConsumer); // 5分钟超时
     }
 
     /**
      * 执行 npm run build 命令
      */
-    private boolean executeNpmBuild(File projectDir) {
+    private boolean executeNpmBuild(File projectDir, Consumer<String> outputConsumer) {
+        // 开启常驻 worker 时直接交给已经加载好 vite 的 Node 进程构建，worker 不可用再退回 npm run build
+        Boolean workerResult = viteBuildWorkerPool.build(projectDir, 180, outputConsumer);
+        if (workerResult != null) {
+            return workerResult;
+        }
         log.info("执行 npm run build...");
         String command = String.format("%s run build", buildCommand("npm"));
-        return executeCommand(projectDir, command, 180); // 3分钟超时
+        return executeCommand(projectDir, command, 180, outputConsumer); // 3分钟超时
     }
 
     /**
@@ -72,13 +82,20 @@ public class VueProjectBuilder {
 
     /**
      * 执行命令
+     * stdout / stderr 由后台线程持续读取，避免输出过多时管道写满导致子进程阻塞到超时
      *
      * @param workingDir     工作目录
      * @param command        命令字符串
      * @param timeoutSeconds 超时时间（秒）
+     * @param outputConsumer 输出行回调
      * @return 是否执行成功
      */
-    private boolean executeCommand(File workingDir, String command, int timeoutSeconds) {
+    private boolean executeCommand(File workingDir, String command, int timeoutSeconds, Consumer<String> outputConsumer) {
+        ProcessOutputBuffer outputBuffer = new ProcessOutputBuffer(OUTPUT_BUFFER_LINES);
+        Consumer<String> lineHandler = line -> {
+            outputBuffer.add(line);
+            outputConsumer.accept(line);
+        };
         try {
             log.info("在目录 {} 中执行命令: {}", workingDir.getAbsolutePath(), command);
             Process process = RuntimeUtil.exec(
@@ -86,27 +103,66 @@ public class VueProjectBuilder {
                     workingDir,
                     command.split("\\s+") // 命令分割为数组
             );
+            Thread stdoutDrainer = startDrainer(process.getInputStream(), lineHandler, "stdout");
+            Thread stderrDrainer = startDrainer(process.getErrorStream(), lineHandler, "stderr");
             // 等待进程完成，设置超时
             boolean finished = process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
             if (!finished) {
                 log.error("命令执行超时（{}秒），强制终止进程", timeoutSeconds);
                 process.destroyForcibly();
+                logOutputTail(outputBuffer);
                 return false;
             }
+            // 进程结束后等读取线程把剩余输出读完
+            stdoutDrainer.join(TimeUnit.SECONDS.toMillis(5));
+            stderrDrainer.join(TimeUnit.SECONDS.toMillis(5));
             int exitCode = process.exitValue();
             if (exitCode == 0) {
                 log.info("命令执行成功: {}", command);
                 return true;
             } else {
                 log.error("命令执行失败，退出码: {}", exitCode);
+                logOutputTail(outputBuffer);
                 return false;
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("执行命令被中断: {}", command);
+            return false;
         } catch (Exception e) {
             log.error("执行命令失败: {}, 错误信息: {}", command, e.getMessage());
             return false;
         }
     }
 
+    /**
+     * 启动后台线程逐行读取进程输出
+     */
+    private static Thread startDrainer(InputStream inputStream, Consumer<String> lineHandler, String streamName) {
+        Thread drainer = new Thread(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    try {
+                        lineHandler.accept(line);
+                    } catch (Exception e) {
+                        // 回调异常不能中断读取，否则管道又会被写满
+                        log.warn("处理构建输出失败: {}", e.getMessage());
+                    }
+                }
+            } catch (IOException e) {
+                log.debug("读取进程 {} 结束: {}", streamName, e.getMessage());
+            }
+        }, "build-output-" + streamName);
+        drainer.setDaemon(true);
+        drainer.start();
+        return drainer;
+    }
+
+    private static void logOutputTail(ProcessOutputBuffer outputBuffer) {
+        log.error("命令输出（最近 {} 行）:\n{}", OUTPUT_BUFFER_LINES, String.join("\n", outputBuffer.snapshot()));
+    }
+
     /**
      * 构建 Vue 项目
      *
@@ -114,6 +170,18 @@ public class VueProjectBuilder {
      * @return 是否构建成功
      */
     public boolean buildProject(String projectPath) {
+        return buildProject(projectPath, (phase, line) -> {
+        });
+    }
+
+    /**
+     * 构建 Vue 项目，并把各阶段的输出和耗时回调给调用方
+     *
+     * @param projectPath    项目根目录路径
+     * @param outputConsumer 构建输出回调（阶段，输出行）
+     * @return 是否构建成功
+     */
+    public boolean buildProject(String projectPath, BiConsumer<VueBuildPhaseEnum, String> outputConsumer) {
         File projectDir = new File(projectPath);
         if (!projectDir.exists() || !projectDir.isDirectory()) {
             log.error("项目目录不存在: {}", projectPath);
@@ -125,24 +193,52 @@ public class VueProjectBuilder {
             log.error("package.json 文件不存在: {}", packageJson.getAbsolutePath());
             return false;
         }
+        // 源码自上次构建以来没有变化（例如生成后立即部署），直接复用已有的 dist
+        String manifestHash = VueBuildManifest.computeHash(projectDir);
+        if (VueBuildManifest.isUpToDate(projectDir, manifestHash)) {
+            log.info("Vue 项目源码未变化，跳过构建: {}", projectPath);
+            return true;
+        }
+        VueBuildManifest.invalidate(projectDir);
         log.info("开始构建 Vue 项目: {}", projectPath);
-        // 执行 npm install
-        if (!executeNpmInstall(projectDir)) {
-            log.error("npm install 执行失败");
-            return false;
+        // 执行 npm install（依赖缓存命中时直接链接共享的 node_modules，跳过安装）
+        long installStart = System.currentTimeMillis();
+        String dependencyCacheKey = nodeModulesCache.computeKey(projectDir);
+        if (!nodeModulesCache.linkIfCached(projectDir, dependencyCacheKey)) {
+            if (!executeNpmInstall(projectDir, line -> outputConsumer.accept(VueBuildPhaseEnum.INSTALL, line))) {
+                log.error("npm install 执行失败");
+                return false;
+            }
+            nodeModulesCache.store(projectDir, dependencyCacheKey);
         }
+        recordPhaseCost(projectPath, VueBuildPhaseEnum.INSTALL, installStart, outputConsumer);
         // 执行 npm run build
-        if (!executeNpmBuild(projectDir)) {
+        long buildStart = System.currentTimeMillis();
+        if (!executeNpmBuild(projectDir, line -> outputConsumer.accept(VueBuildPhaseEnum.BUILD, line))) {
             log.error("npm run build 执行失败");
             return false;
         }
+        recordPhaseCost(projectPath, VueBuildPhaseEnum.BUILD, buildStart, outputConsumer);
         // 验证 dist 目录是否生成 (我们的浏览目录在dist)
         File distDir = new File(projectDir, "dist");
         if (!distDir.exists()) {
             log.error("构建完成但 dist 目录未生成: {}", distDir.getAbsolutePath());
             return false;
         }
+        // dist 被整体重新生成，失效预览缓存
+        PreviewFileCache.invalidate(distDir.toPath());
+        VueBuildManifest.write(projectDir, manifestHash);
         log.info("Vue 项目构建成功，dist 目录: {}", distDir.getAbsolutePath());
         return true;
     }
+
+    /**
+     * 记录阶段耗时：写入日志，同时作为一行输出回调给调用方
+     */
+    private static void recordPhaseCost(String projectPath, VueBuildPhaseEnum phase, long startMillis,
+                                        BiConsumer<VueBuildPhaseEnum, String> outputConsumer) {
+        long costMillis = System.currentTimeMillis() - startMillis;
+        log.info("Vue 项目 {} 阶段完成，耗时 {} ms: {}", phase.getValue(), costMillis, projectPath);
+        outputConsumer.accept(phase, String.format("%s完成，耗时 %d ms", phase.getText(), costMillis));
+    }
 }
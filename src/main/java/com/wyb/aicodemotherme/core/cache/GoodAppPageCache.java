@@ -0,0 +1,73 @@
+package com.wyb.aicodemotherme.core.cache;
+
+import com.wyb.aicodemotherme.config.AppListConfig;
+import com.wyb.aicodemotherme.model.dto.app.AppQueryRequest;
+import com.wyb.aicodemotherme.util.CacheKeyUtils;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * 精选应用列表缓存（good_app_page）的 key 和版本号
+ * key 形如 v{版本号}:{查询条件哈希}，版本号保存在 Redis 的 good_app_page:version 中：
+ * 1. 应用发生变化时版本号加一，所有旧 key 立即失效（不需要 SCAN 删除，旧数据按缓存 TTL 自然过期）
+ * 2. 本地缓存版本号 versionRefreshMillis 毫秒，生成 key 时不用每次读 Redis，其他实例的变更最多延迟这么久生效
+ */
+@Slf4j
+@Component
+public class GoodAppPageCache {
+
+    private static final String VERSION_KEY = "good_app_page:version";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private AppListConfig appListConfig;
+
+    private volatile long version;
+
+    private volatile long versionLoadedAt;
+
+    /**
+     * 生成缓存 key（在 @Cacheable 的 key 表达式中调用）
+     *
+     * @param appQueryRequest 查询条件
+     * @return 缓存 key
+     */
+    public String key(AppQueryRequest appQueryRequest) {
+        // 公开接口的共享缓存，使用抗碰撞的 SHA-256
+        return "v" + currentVersion() + ":" + CacheKeyUtils.generateSharedAppQueryKey(appQueryRequest, true);
+    }
+
+    /**
+     * 精选应用列表整体失效
+     */
+    public void invalidate() {
+        try {
+            Long newVersion = stringRedisTemplate.opsForValue().increment(VERSION_KEY);
+            if (newVersion != null) {
+                version = newVersion;
+                versionLoadedAt = System.currentTimeMillis();
+            }
+        } catch (Exception e) {
+            log.warn("更新精选应用缓存版本失败: {}", e.getMessage());
+        }
+    }
+
+    private long currentVersion() {
+        long now = System.currentTimeMillis();
+        if (now - versionLoadedAt < appListConfig.getGoodAppCacheVersionRefreshMillis()) {
+            return version;
+        }
+        try {
+            String value = stringRedisTemplate.opsForValue().get(VERSION_KEY);
+            version = value == null ? 0L : Long.parseLong(value);
+        } catch (Exception e) {
+            log.warn("读取精选应用缓存版本失败: {}", e.getMessage());
+        }
+        versionLoadedAt = now;
+        return version;
+    }
+}
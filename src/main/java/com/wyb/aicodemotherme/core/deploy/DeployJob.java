@@ -0,0 +1,108 @@
+package com.wyb.aicodemotherme.core.deploy;
+
+import com.wyb.aicodemotherme.exception.BusinessException;
+import com.wyb.aicodemotherme.model.enums.DeployJobStatusEnum;
+import com.wyb.aicodemotherme.model.vo.DeployJobVO;
+import lombok.Getter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 单个部署任务
+ * 状态变化会推送到 replay(latest) 的 sink 中，后订阅的 SSE 连接也能立即拿到当前状态
+ */
+public class DeployJob {
+
+    @Getter
+    private final String jobId;
+
+    @Getter
+    private final Long appId;
+
+    @Getter
+    private final Long userId;
+
+    private final LocalDateTime createTime = LocalDateTime.now();
+
+    private DeployJobStatusEnum status = DeployJobStatusEnum.PENDING;
+
+    private String message = DeployJobStatusEnum.PENDING.getText();
+
+    private String deployUrl;
+
+    private LocalDateTime updateTime = createTime;
+
+    private final Sinks.Many<DeployJobVO> statusSink = Sinks.many().replay().latest();
+
+    /**
+     * 部署结果（访问地址），失败时以 BusinessException 结束
+     */
+    @Getter
+    private final CompletableFuture<String> resultFuture = new CompletableFuture<>();
+
+    DeployJob(String jobId, Long appId, Long userId) {
+        this.jobId = jobId;
+        this.appId = appId;
+        this.userId = userId;
+        statusSink.tryEmitNext(toVO());
+    }
+
+    /**
+     * 更新任务进度
+     *
+     * @param newStatus 新状态
+     */
+    public synchronized void updateStatus(DeployJobStatusEnum newStatus) {
+        if (status.isFinished()) {
+            return;
+        }
+        status = newStatus;
+        message = newStatus.getText();
+        updateTime = LocalDateTime.now();
+        statusSink.tryEmitNext(toVO());
+    }
+
+    synchronized void succeed(String url) {
+        if (status.isFinished()) {
+            return;
+        }
+        deployUrl = url;
+        updateStatus(DeployJobStatusEnum.SUCCESS);
+        statusSink.tryEmitComplete();
+        resultFuture.complete(url);
+    }
+
+    synchronized void fail(int errorCode, String errorMessage) {
+        if (status.isFinished()) {
+            return;
+        }
+        status = DeployJobStatusEnum.FAILED;
+        message = errorMessage;
+        updateTime = LocalDateTime.now();
+        statusSink.tryEmitNext(toVO());
+        statusSink.tryEmitComplete();
+        resultFuture.completeExceptionally(new BusinessException(errorCode, errorMessage));
+    }
+
+    /**
+     * 任务状态流：先收到当前状态，之后每次变化推送一次，任务结束时完成
+     */
+    public Flux<DeployJobVO> asFlux() {
+        return statusSink.asFlux();
+    }
+
+    public synchronized DeployJobVO toVO() {
+        DeployJobVO deployJobVO = new DeployJobVO();
+        deployJobVO.setJobId(jobId);
+        deployJobVO.setAppId(appId);
+        deployJobVO.setStatus(status.getValue());
+        deployJobVO.setMessage(message);
+        deployJobVO.setDeployUrl(deployUrl);
+        deployJobVO.setCreateTime(createTime);
+        deployJobVO.setUpdateTime(updateTime);
+        return deployJobVO;
+    }
+}
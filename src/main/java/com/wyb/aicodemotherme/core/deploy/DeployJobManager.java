@@ -0,0 +1,143 @@
+package com.wyb.aicodemotherme.core.deploy;
+
+import cn.hutool.core.util.IdUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.wyb.aicodemotherme.config.DeployJobConfig;
+import com.wyb.aicodemotherme.exception.BusinessException;
+import com.wyb.aicodemotherme.exception.ErrorCode;
+import com.wyb.aicodemotherme.exception.ThrowUtils;
+import com.wyb.aicodemotherme.model.enums.DeployJobStatusEnum;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 部署任务管理器
+ * 部署（构建 + 发布）在有界的线程池里异步执行，接口线程提交后立即返回任务 id，不会被长时间占用
+ * 同一应用同时只会有一个部署任务，重复提交直接返回正在进行的任务
+ */
+@Slf4j
+@Component
+public class DeployJobManager {
+
+    /**
+     * 部署任务的具体执行逻辑
+     */
+    @FunctionalInterface
+    public interface DeployTask {
+
+        /**
+         * 执行部署
+         *
+         * @param progressListener 进度回调
+         * @return 部署后的访问地址
+         */
+        String execute(Consumer<DeployJobStatusEnum> progressListener);
+    }
+
+    @Resource
+    private DeployJobConfig deployJobConfig;
+
+    /**
+     * 部署任务缓存 (Caffeine)，结束后保留 1 小时供查询
+     */
+    private final Cache<String, DeployJob> jobCache = Caffeine.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(Duration.ofHours(1))
+            .build();
+
+    /**
+     * 正在进行的部署任务，key 为应用 id
+     */
+    private final ConcurrentHashMap<Long, DeployJob> activeJobs = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor deployExecutor;
+
+    @PostConstruct
+    public void init() {
+        int maxConcurrentJobs = Math.max(1, deployJobConfig.getMaxConcurrentJobs());
+        AtomicInteger threadIndex = new AtomicInteger();
+        deployExecutor = new ThreadPoolExecutor(maxConcurrentJobs, maxConcurrentJobs,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, deployJobConfig.getQueueCapacity())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "deploy-worker-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        deployExecutor.shutdownNow();
+    }
+
+    /**
+     * 提交部署任务
+     *
+     * @param appId  应用 id
+     * @param userId 提交用户 id
+     * @param task   部署逻辑
+     * @return 部署任务（同一应用已有进行中的任务时返回该任务）
+     */
+    public DeployJob submit(Long appId, Long userId, DeployTask task) {
+        DeployJob newJob = new DeployJob(IdUtil.fastSimpleUUID(), appId, userId);
+        DeployJob job = activeJobs.putIfAbsent(appId, newJob);
+        if (job != null) {
+            log.info("应用 {} 已有进行中的部署任务: {}", appId, job.getJobId());
+            return job;
+        }
+        jobCache.put(newJob.getJobId(), newJob);
+        try {
+            deployExecutor.execute(() -> run(newJob, task));
+        } catch (RejectedExecutionException e) {
+            activeJobs.remove(appId, newJob);
+            newJob.fail(ErrorCode.TOO_MANY_REQUEST.getCode(), "部署任务过多，请稍后再试");
+            throw new BusinessException(ErrorCode.TOO_MANY_REQUEST, "部署任务过多，请稍后再试");
+        }
+        log.info("应用 {} 部署任务已提交: {}，当前排队数: {}", appId, newJob.getJobId(), deployExecutor.getQueue().size());
+        return newJob;
+    }
+
+    /**
+     * 获取部署任务，只有提交者本人可以查看
+     *
+     * @param jobId  任务 id
+     * @param userId 当前用户 id
+     * @return 部署任务
+     */
+    public DeployJob getJob(String jobId, Long userId) {
+        DeployJob job = jobId == null ? null : jobCache.getIfPresent(jobId);
+        ThrowUtils.throwIf(job == null, ErrorCode.NOT_FOUND_ERROR, "部署任务不存在或已过期");
+        ThrowUtils.throwIf(!job.getUserId().equals(userId), ErrorCode.NO_AUTH_ERROR, "无权限查看该部署任务");
+        return job;
+    }
+
+    private void run(DeployJob job, DeployTask task) {
+        try {
+            String deployUrl = task.execute(job::updateStatus);
+            job.succeed(deployUrl);
+            log.info("应用 {} 部署成功: {}", job.getAppId(), deployUrl);
+        } catch (BusinessException e) {
+            log.error("应用 {} 部署失败: {}", job.getAppId(), e.getMessage());
+            job.fail(e.getCode(), e.getMessage());
+        } catch (Exception e) {
+            log.error("应用 {} 部署异常: {}", job.getAppId(), e.getMessage(), e);
+            job.fail(ErrorCode.SYSTEM_ERROR.getCode(), "部署失败：" + e.getMessage());
+        } finally {
+            activeJobs.remove(job.getAppId(), job);
+        }
+    }
+}
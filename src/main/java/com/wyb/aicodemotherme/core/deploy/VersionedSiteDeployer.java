@@ -0,0 +1,227 @@
+package com.wyb.aicodemotherme.core.deploy;
+
+import cn.hutool.core.date.DatePattern;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.IdUtil;
+import com.wyb.aicodemotherme.constant.AppConstant;
+import com.wyb.aicodemotherme.exception.BusinessException;
+import com.wyb.aicodemotherme.exception.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * 版本化部署器
+ * 每次部署写入一个不可变的版本目录 tmp/code_deploy/.versions/{deployKey}/{version}，
+ * 与当前版本内容相同的文件直接建硬链接，只有变化的文件才复制；
+ * 写完后把 tmp/code_deploy/{deployKey} 这个软链接原子地切换到新版本，访问者要么看到旧站点，要么看到新站点，不会看到复制到一半的内容
+ * 旧版本保留若干个，需要时可以在服务器上把软链接切回去
+ * 不同应用的部署互不阻塞，只有同一个 deployKey 的发布需要串行
+ */
+@Slf4j
+@Component
+public class VersionedSiteDeployer {
+
+    /**
+     * 版本目录所在的隐藏目录
+     */
+    private static final String VERSIONS_DIR_NAME = ".versions";
+
+    /**
+     * 每个应用保留的历史版本数（包括当前版本）
+     */
+    private static final int MAX_RETAINED_VERSIONS = 5;
+
+    private final Path deployRoot = Path.of(AppConstant.CODE_DEPLOY_ROOT_DIR).toAbsolutePath().normalize();
+
+    /**
+     * 按 deployKey 加锁（每个应用一个锁对象）
+     */
+    private final ConcurrentHashMap<String, Object> deployLocks = new ConcurrentHashMap<>();
+
+    /**
+     * 发布新版本
+     *
+     * @param sourceDir 部署源目录（静态站点根目录）
+     * @param deployKey 部署标识
+     * @return 新版本号，退回直接复制时返回 null
+     */
+    public String publish(File sourceDir, String deployKey) {
+        synchronized (deployLocks.computeIfAbsent(deployKey, key -> new Object())) {
+            return doPublish(sourceDir, deployKey);
+        }
+    }
+
+    private String doPublish(File sourceDir, String deployKey) {
+        Path livePath = deployRoot.resolve(deployKey);
+        Path versionsDir = deployRoot.resolve(VERSIONS_DIR_NAME).resolve(deployKey);
+        String version = LocalDateTime.now().format(DatePattern.PURE_DATETIME_MS_FORMATTER);
+        Path versionDir = versionsDir.resolve(version);
+        // 先写到临时目录，写完整后再改名，版本目录里不会出现半成品
+        Path stagingDir = versionsDir.resolve(version + ".tmp-" + IdUtil.fastSimpleUUID());
+        try {
+            Files.createDirectories(versionsDir);
+            // 旧版本的部署目录是真实目录，先把它收进版本目录，之后统一用软链接管理
+            adoptLegacyDeployDir(livePath, versionsDir);
+            Path currentVersionDir = resolveCurrentVersion(livePath);
+            int linkedCount = populateVersion(sourceDir.toPath(), stagingDir, currentVersionDir);
+            moveAtomically(stagingDir, versionDir);
+            switchLiveLink(livePath, versionDir);
+            log.info("部署版本 {} 发布成功，复用（硬链接）文件 {} 个: {}", version, linkedCount, livePath);
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("版本化部署失败，改为直接复制: {}", e.getMessage());
+            FileUtil.del(stagingDir);
+            return copyInPlace(sourceDir, livePath);
+        }
+        cleanOldVersions(versionsDir, versionDir);
+        return version;
+    }
+
+    /**
+     * 按源目录生成新版本：与当前版本内容一致的文件建硬链接，其余复制
+     *
+     * @return 硬链接复用的文件数
+     */
+    private int populateVersion(Path sourceRoot, Path targetRoot, Path currentVersionDir) throws IOException {
+        int linkedCount = 0;
+        try (Stream<Path> paths = Files.walk(sourceRoot)) {
+            for (Path source : (Iterable<Path>) paths::iterator) {
+                Path relative = sourceRoot.relativize(source);
+                Path target = targetRoot.resolve(relative.toString());
+                if (Files.isDirectory(source)) {
+                    Files.createDirectories(target);
+                    continue;
+                }
+                Path previous = currentVersionDir == null ? null : currentVersionDir.resolve(relative.toString());
+                if (previous != null && isSameContent(source, previous)) {
+                    try {
+                        Files.createLink(target, previous);
+                        linkedCount++;
+                        continue;
+                    } catch (IOException | UnsupportedOperationException e) {
+                        // 不支持硬链接（例如跨文件系统）时退回复制
+                    }
+                }
+                Files.copy(source, target, StandardCopyOption.COPY_ATTRIBUTES);
+            }
+        }
+        return linkedCount;
+    }
+
+    /**
+     * 大小相同再逐字节比较，只读不写
+     */
+    private static boolean isSameContent(Path source, Path previous) throws IOException {
+        return Files.isRegularFile(previous)
+                && Files.size(source) == Files.size(previous)
+                && Files.mismatch(source, previous) == -1L;
+    }
+
+    /**
+     * 当前线上版本目录（线上路径不是软链接时返回 null）
+     */
+    private static Path resolveCurrentVersion(Path livePath) throws IOException {
+        if (!Files.isSymbolicLink(livePath)) {
+            return null;
+        }
+        Path target = livePath.getParent().resolve(Files.readSymbolicLink(livePath)).normalize();
+        return Files.isDirectory(target) ? target : null;
+    }
+
+    /**
+     * 用临时软链接 + rename 覆盖的方式切换，rename 是原子操作
+     */
+    private static void switchLiveLink(Path livePath, Path versionDir) throws IOException {
+        Path linkTarget = livePath.getParent().relativize(versionDir);
+        Path tempLink = livePath.resolveSibling("." + livePath.getFileName() + ".link-" + IdUtil.fastSimpleUUID());
+        Files.createSymbolicLink(tempLink, linkTarget);
+        try {
+            Files.move(tempLink, livePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempLink);
+            throw e;
+        }
+    }
+
+    /**
+     * 兼容旧的部署方式：线上路径还是真实目录时，把它移动为一个历史版本
+     * 这一步无法做到原子（目录不能被软链接直接覆盖），只会在每个应用第一次版本化部署时发生一次
+     */
+    private static void adoptLegacyDeployDir(Path livePath, Path versionsDir) throws IOException {
+        if (!Files.isDirectory(livePath, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        Path legacyVersionDir = versionsDir.resolve("00000000000000000-legacy");
+        try {
+            moveAtomically(livePath, legacyVersionDir);
+        } catch (FileAlreadyExistsException e) {
+            FileUtil.del(livePath);
+            return;
+        }
+        switchLiveLink(livePath, legacyVersionDir);
+    }
+
+    /**
+     * 保留最近的若干个版本，当前版本永远不会被删除
+     */
+    private void cleanOldVersions(Path versionsDir, Path currentVersionDir) {
+        List<String> versions = listVersionNames(versionsDir);
+        for (int i = MAX_RETAINED_VERSIONS; i < versions.size(); i++) {
+            Path oldVersionDir = versionsDir.resolve(versions.get(i));
+            if (!oldVersionDir.equals(currentVersionDir)) {
+                FileUtil.del(oldVersionDir);
+            }
+        }
+    }
+
+    /**
+     * 版本目录名（按时间倒序，不含写入中的临时目录）
+     */
+    private static List<String> listVersionNames(Path versionsDir) {
+        try (Stream<Path> children = Files.list(versionsDir)) {
+            return children.map(path -> path.getFileName().toString())
+                    .filter(name -> !name.contains(".tmp-"))
+                    .sorted(Comparator.reverseOrder())
+                    .toList();
+        } catch (IOException e) {
+            log.warn("读取部署版本失败: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * 文件系统不支持软链接时的兜底：和原来一样直接覆盖复制
+     */
+    private static String copyInPlace(File sourceDir, Path livePath) {
+        try {
+            if (Files.isSymbolicLink(livePath)) {
+                Files.delete(livePath);
+            }
+            FileUtil.copyContent(sourceDir, livePath.toFile(), true);
+        } catch (Exception e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "部署失败：" + e.getMessage());
+        }
+        return null;
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target);
+        }
+    }
+}
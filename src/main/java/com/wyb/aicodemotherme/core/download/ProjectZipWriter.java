@@ -0,0 +1,438 @@
+package com.wyb.aicodemotherme.core.download;
+
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.crypto.digest.DigestAlgorithm;
+import cn.hutool.crypto.digest.Digester;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 项目打包工具
+ * 1. 遍历目录时直接跳过被忽略的目录（node_modules、dist 等整棵子树都不会被访问），不再逐个文件判断
+ * 2. 条目按路径排序，同样的文件集合总是得到同样的指纹和同样的压缩包
+ * 3. 流式写出 zip，压缩级别可配置
+ * 4. 文件较多时在 ForkJoin 线程池里并行压缩各个条目，再按顺序写出（每个条目独立压缩，可以直接拼接成 zip）；
+ *    并行写出不支持 ZIP64，条目数或大小超出普通 zip 格式范围时退回 ZipOutputStream 串行写出
+ */
+public final class ProjectZipWriter {
+
+    /**
+     * 需要过滤的文件和目录名称
+     */
+    private static final Set<String> IGNORED_NAMES = Set.of(
+            "node_modules",
+            ".git",
+            "dist",
+            "build",
+            ".DS_Store",
+            ".env",
+            "target",
+            ".mvn",
+            ".idea",
+            ".vscode",
+            ".build-manifest"
+    );
+
+    /**
+     * 需要过滤的文件扩展名
+     */
+    private static final Set<String> IGNORED_EXTENSIONS = Set.of(
+            ".log",
+            ".tmp",
+            ".cache"
+    );
+
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 文件数不少于该值才并行压缩，小项目单线程更快
+     */
+    private static final int PARALLEL_MIN_FILES = 8;
+
+    /**
+     * 普通 zip 格式（非 ZIP64）的上限：条目数是 16 位（0xFFFF 表示 ZIP64），大小和偏移量是 32 位（0xFFFFFFFF 表示 ZIP64）
+     */
+    private static final int ZIP_MAX_ENTRIES = 0xFFFF;
+
+    private static final long ZIP_MAX_SIZE = 0xFFFFFFFFL;
+
+    /**
+     * 并行压缩时整个文件在内存里压缩，总大小再留一半余量（文件在打包过程中可能变大，压缩后也可能略大于原文件）
+     */
+    private static final long PARALLEL_MAX_TOTAL_SIZE = ZIP_MAX_SIZE / 2;
+
+    /**
+     * zip 格式常量
+     */
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+    private static final int METHOD_STORED = 0;
+
+    private static final int METHOD_DEFLATED = 8;
+
+    /**
+     * 通用标志位 11：文件名使用 UTF-8 编码
+     */
+    private static final int FLAG_UTF8 = 0x0800;
+
+    private static final int VERSION_STORED = 10;
+
+    private static final int VERSION_DEFLATED = 20;
+
+    /**
+     * MS-DOS 目录属性
+     */
+    private static final int DOS_DIRECTORY_ATTRIBUTE = 0x10;
+
+    private ProjectZipWriter() {
+    }
+
+    /**
+     * 压缩包中的一个条目
+     *
+     * @param entryName    条目名（相对项目根目录，以 / 分隔，目录以 / 结尾）
+     * @param path         文件路径
+     * @param directory    是否目录
+     * @param size         文件大小
+     * @param lastModified 修改时间（毫秒）
+     */
+    public record ZipSource(String entryName, Path path, boolean directory, long size, long lastModified) {
+    }
+
+    /**
+     * 收集需要打包的文件（已按条目名排序）
+     *
+     * @param projectRoot 项目根目录
+     * @return 条目列表
+     */
+    public static List<ZipSource> collect(Path projectRoot) throws IOException {
+        List<ZipSource> sources = new ArrayList<>();
+        Files.walkFileTree(projectRoot, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.equals(projectRoot)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                // 被忽略的目录整棵子树跳过
+                if (isIgnored(dir.getFileName().toString())) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                sources.add(new ZipSource(toEntryName(projectRoot, dir) + "/", dir, true, 0L,
+                        attrs.lastModifiedTime().toMillis()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                // 软链接（例如共享的 node_modules）和特殊文件不打包
+                if (attrs.isRegularFile() && !isIgnored(file.getFileName().toString())) {
+                    sources.add(new ZipSource(toEntryName(projectRoot, file), file, false, attrs.size(),
+                            attrs.lastModifiedTime().toMillis()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                // 生成过程中文件可能被删除，跳过即可
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        sources.sort(Comparator.comparing(ZipSource::entryName));
+        return sources;
+    }
+
+    /**
+     * 计算条目列表的指纹（条目名 + 大小 + 修改时间 + 压缩级别），不读取文件内容
+     *
+     * @param sources          条目列表
+     * @param compressionLevel 压缩级别
+     * @return 十六进制指纹
+     */
+    public static String fingerprint(List<ZipSource> sources, int compressionLevel) {
+        MessageDigest digest = new Digester(DigestAlgorithm.SHA256).getDigest();
+        digest.update((byte) compressionLevel);
+        for (ZipSource source : sources) {
+            digest.update(source.entryName().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(Long.toString(source.size()).getBytes(StandardCharsets.US_ASCII));
+            digest.update((byte) 0);
+            digest.update(Long.toString(source.lastModified()).getBytes(StandardCharsets.US_ASCII));
+            digest.update((byte) '\n');
+        }
+        return HexUtil.encodeHexStr(digest.digest());
+    }
+
+    /**
+     * 把条目流式写成 zip，写完后只 flush，不关闭输出流
+     *
+     * @param sources          条目列表
+     * @param outputStream     输出流
+     * @param compressionLevel 压缩级别（0-9）
+     */
+    public static void write(List<ZipSource> sources, OutputStream outputStream, int compressionLevel) throws IOException {
+        ZipOutputStream zipOutputStream = new ZipOutputStream(new BufferedOutputStream(outputStream, OUTPUT_BUFFER_SIZE),
+                StandardCharsets.UTF_8);
+        zipOutputStream.setLevel(compressionLevel);
+        for (ZipSource source : sources) {
+            ZipEntry entry = new ZipEntry(source.entryName());
+            entry.setTime(source.lastModified());
+            zipOutputStream.putNextEntry(entry);
+            if (!source.directory()) {
+                Files.copy(source.path(), zipOutputStream);
+            }
+            zipOutputStream.closeEntry();
+        }
+        zipOutputStream.finish();
+        zipOutputStream.flush();
+    }
+
+    /**
+     * 是否适合并行压缩：文件足够多，且不需要 ZIP64（条目数、单个文件大小、总大小都在普通 zip 格式范围内）
+     *
+     * @param sources 条目列表
+     * @return 是否并行压缩
+     */
+    public static boolean shouldWriteParallel(List<ZipSource> sources) {
+        if (sources.size() >= ZIP_MAX_ENTRIES) {
+            return false;
+        }
+        long fileCount = 0;
+        long totalSize = 0;
+        for (ZipSource source : sources) {
+            if (!source.directory()) {
+                if (source.size() >= ZIP_MAX_SIZE) {
+                    return false;
+                }
+                fileCount++;
+                totalSize += source.size();
+            }
+        }
+        return fileCount >= PARALLEL_MIN_FILES && totalSize <= PARALLEL_MAX_TOTAL_SIZE;
+    }
+
+    /**
+     * 并行压缩各个条目，按原顺序写出 zip，写完后只 flush，不关闭输出流
+     * 同时在压缩中的条目数有上限，写出慢时不会把整个项目的压缩结果都堆在内存里
+     *
+     * @param sources          条目列表
+     * @param outputStream     输出流
+     * @param compressionLevel 压缩级别（0-9）
+     * @param pool             压缩线程池
+     */
+    public static void writeParallel(List<ZipSource> sources, OutputStream outputStream, int compressionLevel,
+                                     ForkJoinPool pool) throws IOException {
+        int maxInFlight = pool.getParallelism() * 4;
+        ArrayDeque<ForkJoinTask<CompressedEntry>> inFlight = new ArrayDeque<>(maxInFlight);
+        ZipBlockWriter writer = new ZipBlockWriter(new BufferedOutputStream(outputStream, OUTPUT_BUFFER_SIZE));
+        int nextIndex = 0;
+        try {
+            while (nextIndex < sources.size() || !inFlight.isEmpty()) {
+                while (nextIndex < sources.size() && inFlight.size() < maxInFlight) {
+                    ZipSource source = sources.get(nextIndex++);
+                    inFlight.addLast(pool.submit(() -> compress(source, compressionLevel)));
+                }
+                writer.writeEntry(inFlight.removeFirst().join());
+            }
+            writer.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            inFlight.forEach(task -> task.cancel(true));
+        }
+    }
+
+    /**
+     * 单个条目的压缩结果
+     */
+    private record CompressedEntry(byte[] name, boolean directory, int method, long crc, byte[] data,
+                                   long uncompressedSize, long dosTime) {
+    }
+
+    /**
+     * 读取并独立压缩一个条目（原始 deflate 流，不带 zlib 头）；压缩后反而更大的文件直接存储
+     */
+    private static CompressedEntry compress(ZipSource source, int compressionLevel) {
+        byte[] name = source.entryName().getBytes(StandardCharsets.UTF_8);
+        long dosTime = toDosTime(source.lastModified());
+        if (source.directory()) {
+            return new CompressedEntry(name, true, METHOD_STORED, 0L, new byte[0], 0L, dosTime);
+        }
+        byte[] content;
+        try {
+            content = Files.readAllBytes(source.path());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(content);
+        if (compressionLevel == Deflater.NO_COMPRESSION) {
+            return new CompressedEntry(name, false, METHOD_STORED, crc32.getValue(), content, content.length, dosTime);
+        }
+        Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            deflater.setInput(content);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, content.length / 2));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                compressed.write(buffer, 0, length);
+            }
+            if (compressed.size() >= content.length) {
+                return new CompressedEntry(name, false, METHOD_STORED, crc32.getValue(), content, content.length, dosTime);
+            }
+            return new CompressedEntry(name, false, METHOD_DEFLATED, crc32.getValue(), compressed.toByteArray(),
+                    content.length, dosTime);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 毫秒时间戳转为 zip 使用的 MS-DOS 日期时间（高 16 位日期，低 16 位时间）
+     */
+    private static long toDosTime(long millis) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((long) (time.getYear() - 1980) << 25)
+                | ((long) time.getMonthValue() << 21)
+                | ((long) time.getDayOfMonth() << 16)
+                | ((long) time.getHour() << 11)
+                | ((long) time.getMinute() << 5)
+                | ((long) time.getSecond() >> 1);
+    }
+
+    /**
+     * 按 zip 格式顺序写出已压缩好的条目：本地文件头 + 数据，最后写中央目录
+     * 不写 ZIP64 扩展，超出普通 zip 格式范围时直接报错，不会写出字段被截断的压缩包
+     * （shouldWriteParallel 已按收集时的文件大小排除，这里防止打包过程中文件变大）
+     */
+    private static class ZipBlockWriter {
+
+        private final OutputStream out;
+
+        private final ByteBuffer centralDirectory;
+
+        private final ByteArrayOutputStream centralDirectoryBuffer = new ByteArrayOutputStream();
+
+        private long offset;
+
+        private int entryCount;
+
+        private ZipBlockWriter(OutputStream out) {
+            this.out = out;
+            this.centralDirectory = ByteBuffer.allocate(46).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private void writeEntry(CompressedEntry entry) throws IOException {
+            if (entryCount + 1 >= ZIP_MAX_ENTRIES || entry.uncompressedSize() >= ZIP_MAX_SIZE
+                    || offset + 30L + entry.name().length + entry.data().length >= ZIP_MAX_SIZE) {
+                throw new ZipException("压缩包超出普通 zip 格式范围，需要 ZIP64");
+            }
+            int version = entry.method() == METHOD_DEFLATED ? VERSION_DEFLATED : VERSION_STORED;
+            ByteBuffer localHeader = ByteBuffer.allocate(30).order(ByteOrder.LITTLE_ENDIAN);
+            localHeader.putInt(LOCAL_HEADER_SIGNATURE)
+                    .putShort((short) version)
+                    .putShort((short) FLAG_UTF8)
+                    .putShort((short) entry.method())
+                    .putInt((int) entry.dosTime())
+                    .putInt((int) entry.crc())
+                    .putInt(entry.data().length)
+                    .putInt((int) entry.uncompressedSize())
+                    .putShort((short) entry.name().length)
+                    .putShort((short) 0);
+            out.write(localHeader.array());
+            out.write(entry.name());
+            out.write(entry.data());
+
+            centralDirectory.clear();
+            centralDirectory.putInt(CENTRAL_HEADER_SIGNATURE)
+                    .putShort((short) VERSION_DEFLATED)
+                    .putShort((short) version)
+                    .putShort((short) FLAG_UTF8)
+                    .putShort((short) entry.method())
+                    .putInt((int) entry.dosTime())
+                    .putInt((int) entry.crc())
+                    .putInt(entry.data().length)
+                    .putInt((int) entry.uncompressedSize())
+                    .putShort((short) entry.name().length)
+                    .putShort((short) 0)
+                    .putShort((short) 0)
+                    .putShort((short) 0)
+                    .putShort((short) 0)
+                    .putInt(entry.directory() ? DOS_DIRECTORY_ATTRIBUTE : 0)
+                    .putInt((int) offset);
+            centralDirectoryBuffer.write(centralDirectory.array());
+            centralDirectoryBuffer.write(entry.name());
+
+            offset += 30L + entry.name().length + entry.data().length;
+            entryCount++;
+        }
+
+        private void finish() throws IOException {
+            int centralDirectorySize = centralDirectoryBuffer.size();
+            if (offset + centralDirectorySize >= ZIP_MAX_SIZE) {
+                throw new ZipException("压缩包超出普通 zip 格式范围，需要 ZIP64");
+            }
+            centralDirectoryBuffer.writeTo(out);
+            ByteBuffer end = ByteBuffer.allocate(22).order(ByteOrder.LITTLE_ENDIAN);
+            end.putInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE)
+                    .putShort((short) 0)
+                    .putShort((short) 0)
+                    .putShort((short) entryCount)
+                    .putShort((short) entryCount)
+                    .putInt(centralDirectorySize)
+                    .putInt((int) offset)
+                    .putShort((short) 0);
+            out.write(end.array());
+            out.flush();
+        }
+    }
+
+    private static boolean isIgnored(String name) {
+        if (IGNORED_NAMES.contains(name)) {
+            return true;
+        }
+        int dotIndex = name.lastIndexOf('.');
+        return dotIndex >= 0 && IGNORED_EXTENSIONS.contains(name.substring(dotIndex));
+    }
+
+    private static String toEntryName(Path projectRoot, Path path) {
+        return projectRoot.relativize(path).toString().replace('\\', '/');
+    }
+}
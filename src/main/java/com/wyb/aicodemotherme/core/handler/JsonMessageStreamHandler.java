@@ -8,6 +8,7 @@ import com.wyb.aicodemotherme.ai.tools.BaseTool;
 import com.wyb.aicodemotherme.ai.tools.ToolManager;
 import com.wyb.aicodemotherme.model.entity.User;
 import com.wyb.aicodemotherme.model.enums.ChatHistoryMessageTypeEnum;
+import com.wyb.aicodemotherme.model.enums.VueBuildPhaseEnum;
 import com.wyb.aicodemotherme.service.ChatHistoryService;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
@@ -20,6 +21,7 @@ import java.util.Set;
 /**
  * JSON 消息流处理器
  * 处理 VUE_PROJECT 类型的复杂流式响应，包含工具调用信息
+ * 上游直接传递类型化的 StreamMessage，这里按类型分发，不再对每个 chunk 做 JSON 解析
  */
 @Slf4j
 @Component
@@ -30,7 +32,7 @@ public class JsonMessageStreamHandler {
 
     /**
      * 处理 TokenStream（VUE_PROJECT）把完整内容（包含 AI 文本 + 工具执行结果）汇总进 chatHistory，用于持久化
-     * 解析 JSON 消息并重组为完整的响应格式
+     * 按消息类型处理并重组为完整的响应格式
      *
      * @param originFlux         原始流
      * @param chatHistoryService 聊天历史服务
@@ -38,7 +40,7 @@ public class JsonMessageStreamHandler {
      * @param loginUser          登录用户
      * @return 处理后的流
      */
-    public Flux<String> handle(Flux<String> originFlux,
+    public Flux<String> handle(Flux<StreamMessage> originFlux,
                                ChatHistoryService chatHistoryService,
                                long appId, User loginUser) {
         // 收集数据用于生成后端记忆格式
@@ -46,9 +48,9 @@ public class JsonMessageStreamHandler {
         // 用于跟踪已经见过的工具ID，判断是否是第一次调用
         Set<String> seenToolIds = new HashSet<>();
         return originFlux
-                .map(chunk -> {
-                    // 解析每个 JSON 消息块
-                    return handleJsonMessageChunk(chunk, chatHistoryStringBuilder, seenToolIds);
+                .map(streamMessage -> {
+                    // 按类型处理每条消息
+                    return handleStreamMessage(streamMessage, chatHistoryStringBuilder, seenToolIds);
                 })
                 .filter(StrUtil::isNotEmpty) // 过滤空字串，tool_request 在非首次出现时会返回 ""
                 .doOnComplete(() -> {
@@ -60,7 +62,7 @@ public class JsonMessageStreamHandler {
                 .doOnError(error -> {
                     // 如果AI回复失败，也要记录错误消息
                     String errorMessage = "AI回复失败: " + error.getMessage();
-                    chatHistoryService.addChatMessage(appId, errorMessage, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
+                    chatHistoryService.addChatErrorMessage(appId, errorMessage, loginUser.getId());
                 });
     }
 
@@ -69,29 +71,28 @@ public class JsonMessageStreamHandler {
      */
     /**
      * 它是一个“流式消息分发器/汇总器”：
-     * 把上游推来的 JSON chunk 按 type 分流处理
+     * 把上游推来的消息按 type 分流处理
      * 返回前端要显示的增量内容
      * 同时把完整内容（包含 AI 文本 + 工具执行结果）汇总进 chatHistory，用于持久化
      * 对工具请求阶段做 toolId 去重 防刷屏
-     * @param chunk
+     * @param streamMessage
      * @param chatHistoryStringBuilder
      * @param seenToolIds
      * @return
      */
-    private String handleJsonMessageChunk(String chunk, StringBuilder chatHistoryStringBuilder, Set<String> seenToolIds) {
-        // 解析 JSON，按类型来区分
-        StreamMessage streamMessage = JSONUtil.toBean(chunk, StreamMessage.class);
+    private String handleStreamMessage(StreamMessage streamMessage, StringBuilder chatHistoryStringBuilder, Set<String> seenToolIds) {
+        // 按类型来区分
         StreamMessageTypeEnum typeEnum = StreamMessageTypeEnum.getEnumByValue(streamMessage.getType());
         switch (typeEnum) {
             case AI_RESPONSE -> {
-                AiResponseMessage aiMessage = JSONUtil.toBean(chunk, AiResponseMessage.class);
+                AiResponseMessage aiMessage = (AiResponseMessage) streamMessage;
                 String data = aiMessage.getData();
                 // 直接拼接响应
                 chatHistoryStringBuilder.append(data);
                 return data;
             }
             case TOOL_REQUEST -> {
-                ToolRequestMessage toolRequestMessage = JSONUtil.toBean(chunk, ToolRequestMessage.class);
+                ToolRequestMessage toolRequestMessage = (ToolRequestMessage) streamMessage;
                 String toolId = toolRequestMessage.getId();
                 String toolName = toolRequestMessage.getName();
                 // 检查是否是第一次看到这个工具 ID
@@ -108,7 +109,7 @@ public class JsonMessageStreamHandler {
                 }
             }
             case TOOL_EXECUTED -> {
-                ToolExecutedMessage toolExecutedMessage = JSONUtil.toBean(chunk, ToolExecutedMessage.class);
+                ToolExecutedMessage toolExecutedMessage = (ToolExecutedMessage) streamMessage;
                 String toolName = toolExecutedMessage.getName();
                 JSONObject jsonObject = JSONUtil.parseObj(toolExecutedMessage.getArguments());
                 // 根据工具名称获取工具实例并生成相应的结果格式
@@ -119,6 +120,21 @@ public class JsonMessageStreamHandler {
                 chatHistoryStringBuilder.append(output);
                 return output;
             }
+            case BUILD_STATUS -> {
+                BuildStatusMessage buildStatusMessage = (BuildStatusMessage) streamMessage;
+                // 构建状态只展示给前端，不写入对话历史
+                return String.format("\n\n[构建状态] %s\n\n", buildStatusMessage.getDescription());
+            }
+            case BUILD_LOG -> {
+                BuildLogMessage buildLogMessage = (BuildLogMessage) streamMessage;
+                if (StrUtil.isBlank(buildLogMessage.getContent())) {
+                    return "";
+                }
+                // 构建日志同样只展示给前端，每行单独成段
+                VueBuildPhaseEnum phaseEnum = VueBuildPhaseEnum.getEnumByValue(buildLogMessage.getPhase());
+                String phaseText = phaseEnum == null ? buildLogMessage.getPhase() : phaseEnum.getText();
+                return String.format("[%s] %s\n\n", phaseText, buildLogMessage.getContent());
+            }
             default -> {
                 log.error("不支持的消息类型: {}", typeEnum);
                 return "";
@@ -41,7 +41,7 @@ public class SimpleTextStreamHandler {
                 .doOnError(error -> {
                     // 如果AI回复失败，也要记录错误消息
                     String errorMessage = "AI回复失败: " + error.getMessage();
-                    chatHistoryService.addChatMessage(appId, errorMessage, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
+                    chatHistoryService.addChatErrorMessage(appId, errorMessage, loginUser.getId());
                 });
     }
 }
\ No newline at end of file
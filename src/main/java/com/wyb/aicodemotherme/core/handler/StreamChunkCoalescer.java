@@ -0,0 +1,131 @@
+package com.wyb.aicodemotherme.core.handler;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式片段合并器（微批）
+ * LLM 的每个增量往往只有 1~3 个字符，逐条推送 SSE 时，包装、序列化、写出和 flush 的开销远大于内容本身
+ * 这里把连续的片段攒成一批：累计字节数达到 maxBytes，或者距离这一批第一个片段已经过去 maxDelay，二者先到先推送
+ */
+public class StreamChunkCoalescer {
+
+    private StreamChunkCoalescer() {
+    }
+
+    /**
+     * 合并流式片段
+     *
+     * @param source   原始片段流
+     * @param maxBytes 一批的最大字节数（UTF-8）
+     * @param maxDelay 一批的最长等待时间
+     * @return 合并后的片段流
+     */
+    public static Flux<String> coalesce(Flux<String> source, int maxBytes, Duration maxDelay) {
+        return Flux.create(sink -> {
+            Batch batch = new Batch(sink, maxBytes, maxDelay);
+            Disposable upstream = source.subscribe(batch::onNext, batch::onError, batch::onComplete);
+            // 下游取消（例如前端断开连接）时同时取消上游和定时器
+            sink.onDispose(() -> {
+                upstream.dispose();
+                batch.cancelTimer();
+            });
+        });
+    }
+
+    /**
+     * 一个订阅对应的批次状态，上游线程和定时器线程都会访问，所有操作加锁
+     */
+    private static class Batch {
+
+        private final FluxSink<String> sink;
+
+        private final int maxBytes;
+
+        private final long maxDelayMillis;
+
+        private final StringBuilder buffer = new StringBuilder();
+
+        private int bufferedBytes = 0;
+
+        private Disposable timer;
+
+        private Batch(FluxSink<String> sink, int maxBytes, Duration maxDelay) {
+            this.sink = sink;
+            this.maxBytes = maxBytes;
+            this.maxDelayMillis = maxDelay.toMillis();
+        }
+
+        private synchronized void onNext(String chunk) {
+            if (chunk == null || chunk.isEmpty()) {
+                return;
+            }
+            if (buffer.isEmpty()) {
+                // 新批次开始计时
+                timer = Schedulers.parallel().schedule(this::flushOnTimeout, maxDelayMillis, TimeUnit.MILLISECONDS);
+            }
+            buffer.append(chunk);
+            bufferedBytes += utf8Length(chunk);
+            if (bufferedBytes >= maxBytes) {
+                flush();
+            }
+        }
+
+        private synchronized void onError(Throwable error) {
+            flush();
+            sink.error(error);
+        }
+
+        private synchronized void onComplete() {
+            flush();
+            sink.complete();
+        }
+
+        private synchronized void flushOnTimeout() {
+            timer = null;
+            flush();
+        }
+
+        private synchronized void cancelTimer() {
+            if (timer != null) {
+                timer.dispose();
+                timer = null;
+            }
+        }
+
+        private void flush() {
+            cancelTimer();
+            if (buffer.isEmpty()) {
+                return;
+            }
+            String batchContent = buffer.toString();
+            buffer.setLength(0);
+            bufferedBytes = 0;
+            sink.next(batchContent);
+        }
+    }
+
+    /**
+     * 计算字符串的 UTF-8 字节数（不分配字节数组）
+     */
+    private static int utf8Length(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800 || Character.isSurrogate(c)) {
+                // 代理对两个 char 共 4 字节，每个记 2
+                length += 2;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
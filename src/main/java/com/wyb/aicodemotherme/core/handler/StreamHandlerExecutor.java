@@ -1,5 +1,7 @@
 package com.wyb.aicodemotherme.core.handler;
 
+import com.wyb.aicodemotherme.ai.model.message.AiResponseMessage;
+import com.wyb.aicodemotherme.ai.model.message.StreamMessage;
 import com.wyb.aicodemotherme.model.entity.User;
 import com.wyb.aicodemotherme.model.enums.CodeGenTypeEnum;
 import com.wyb.aicodemotherme.service.ChatHistoryService;
@@ -11,8 +13,8 @@ import reactor.core.publisher.Flux;
 /**
  * 流处理器执行器
  * 根据代码生成类型创建合适的流处理器：
- * 1. 传统的 Flux<String> 流（HTML、MULTI_FILE） -> SimpleTextStreamHandler
- * 2. TokenStream 格式的复杂流（VUE_PROJECT） -> JsonMessageStreamHandler
+ * 1. 传统的文本流（HTML、MULTI_FILE，只有 AI 响应消息） -> SimpleTextStreamHandler
+ * 2. TokenStream 格式的复杂流（VUE_PROJECT，包含工具调用消息） -> JsonMessageStreamHandler
  */
 @Slf4j
 @Component
@@ -31,14 +33,16 @@ public class StreamHandlerExecutor {
      * @param codeGenType        代码生成类型
      * @return 处理后的流
      */
-    public Flux<String> doExecute(Flux<String> originFlux,
+    public Flux<String> doExecute(Flux<StreamMessage> originFlux,
                                   ChatHistoryService chatHistoryService,
                                   long appId, User loginUser, CodeGenTypeEnum codeGenType) {
         return switch (codeGenType) {
             case VUE_PROJECT -> // 使用注入的组件实例
                     jsonMessageStreamHandler.handle(originFlux, chatHistoryService, appId, loginUser);
             case HTML, MULTI_FILE -> // 简单文本处理器不需要依赖注入
-                    new SimpleTextStreamHandler().handle(originFlux, chatHistoryService, appId, loginUser);
+                    new SimpleTextStreamHandler().handle(
+                            originFlux.ofType(AiResponseMessage.class).map(AiResponseMessage::getData),
+                            chatHistoryService, appId, loginUser);
             default -> Flux.empty();
         };
     }
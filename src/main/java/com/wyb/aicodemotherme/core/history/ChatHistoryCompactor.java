@@ -0,0 +1,225 @@
+package com.wyb.aicodemotherme.core.history;
+
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.wyb.aicodemotherme.ai.ChatHistorySummaryService;
+import com.wyb.aicodemotherme.ai.ChatHistorySummaryServiceFactory;
+import com.wyb.aicodemotherme.ai.memory.ChatMemoryVersionStore;
+import com.wyb.aicodemotherme.config.ChatMemoryConfig;
+import com.wyb.aicodemotherme.mapper.ChatHistoryMapper;
+import com.wyb.aicodemotherme.mapper.ChatHistorySummaryMapper;
+import com.wyb.aicodemotherme.model.entity.ChatHistory;
+import com.wyb.aicodemotherme.model.entity.ChatHistorySummary;
+import com.wyb.aicodemotherme.model.enums.ChatHistoryMessageTypeEnum;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对话历史后台压缩
+ * 1. 每轮对话结束（保存 AI 回复）时把应用标记为待压缩，后台任务每隔 summaryIntervalMillis 毫秒处理一次
+ * 2. 最新的 summaryKeepRecentMessages 条对话保留原文，更早且还没压缩的对话积累到 summaryMinMessages 条后，
+ *    连同之前的摘要交给模型合并成新的摘要，按 (createTime, id) 记录摘要覆盖到的位置
+ * 3. 重建记忆时摘要放在最前面，只读取摘要之后的对话，长期使用的应用 prompt 大小保持稳定，也不用再扫描很早的历史
+ * 摘要更新后删除记忆版本标记，下次创建 AI 服务时带着新摘要重建记忆（进行中的对话不受影响）
+ */
+@Slf4j
+@Component
+public class ChatHistoryCompactor {
+
+    @Resource
+    private ChatHistoryMapper chatHistoryMapper;
+
+    @Resource
+    private ChatHistorySummaryMapper chatHistorySummaryMapper;
+
+    @Resource
+    private ChatHistorySummaryServiceFactory chatHistorySummaryServiceFactory;
+
+    @Resource
+    private ChatHistoryWriteBehindQueue chatHistoryWriteBehindQueue;
+
+    @Resource
+    private ChatMemoryVersionStore chatMemoryVersionStore;
+
+    @Resource
+    private ChatMemoryConfig chatMemoryConfig;
+
+    /**
+     * 待压缩的应用
+     */
+    private final Set<Long> dirtyAppIds = ConcurrentHashMap.newKeySet();
+
+    private ScheduledExecutorService compactExecutor;
+
+    @PostConstruct
+    public void init() {
+        if (!Boolean.TRUE.equals(chatMemoryConfig.getSummaryEnabled())) {
+            return;
+        }
+        long interval = Math.max(1000L, chatMemoryConfig.getSummaryIntervalMillis());
+        compactExecutor = Executors.newSingleThreadScheduledExecutor(
+                ThreadUtil.newNamedThreadFactory("chat-history-compact-", true));
+        compactExecutor.scheduleWithFixedDelay(this::compactDirtyApps, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (compactExecutor != null) {
+            compactExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 标记应用有新的对话，等待后台压缩
+     *
+     * @param appId 应用 id
+     */
+    public void markDirty(Long appId) {
+        if (compactExecutor != null && appId != null) {
+            dirtyAppIds.add(appId);
+        }
+    }
+
+    /**
+     * 获取应用的摘要
+     *
+     * @param appId 应用 id
+     * @return 摘要，不存在时返回 null
+     */
+    public ChatHistorySummary getSummary(Long appId) {
+        return chatHistorySummaryMapper.selectById(appId);
+    }
+
+    /**
+     * 删除应用的摘要（删除对话历史时调用）
+     *
+     * @param appId 应用 id
+     */
+    public void deleteSummary(Long appId) {
+        dirtyAppIds.remove(appId);
+        chatHistorySummaryMapper.deleteById(appId);
+    }
+
+    /**
+     * 查询条件只保留摘要之后的对话
+     *
+     * @param queryWrapper 对话历史查询条件
+     * @param summary      摘要，为 null 时不追加条件
+     */
+    public static void afterSummary(LambdaQueryWrapper<ChatHistory> queryWrapper, ChatHistorySummary summary) {
+        if (summary == null) {
+            return;
+        }
+        queryWrapper.and(wrapper -> wrapper.gt(ChatHistory::getCreateTime, summary.getLastCreateTime())
+                .or(inner -> inner.eq(ChatHistory::getCreateTime, summary.getLastCreateTime())
+                        .gt(ChatHistory::getId, summary.getLastHistoryId())));
+    }
+
+    private void compactDirtyApps() {
+        for (Long appId : new ArrayList<>(dirtyAppIds)) {
+            dirtyAppIds.remove(appId);
+            try {
+                // 单次压缩数量有上限，积压较多时下一轮继续
+                if (compact(appId)) {
+                    dirtyAppIds.add(appId);
+                }
+            } catch (Exception e) {
+                log.error("压缩对话历史失败, appId: {}, error: {}", appId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 压缩一个应用的较早对话
+     *
+     * @return 是否还有待压缩的对话
+     */
+    private boolean compact(Long appId) {
+        chatHistoryWriteBehindQueue.flushPending();
+        int keepRecent = Math.max(1, chatMemoryConfig.getSummaryKeepRecentMessages());
+        int batchSize = Math.max(chatMemoryConfig.getSummaryMinMessages(), chatMemoryConfig.getSummaryBatchMessages());
+        //1. 找到保留原文的最早一条之前的那条对话，作为本次压缩的上界
+        ChatHistory boundary = chatHistoryMapper.selectOne(Wrappers.lambdaQuery(ChatHistory.class)
+                .select(ChatHistory::getId, ChatHistory::getCreateTime)
+                .eq(ChatHistory::getAppId, appId)
+                .orderByDesc(ChatHistory::getCreateTime)
+                .orderByDesc(ChatHistory::getId)
+                .last("limit " + keepRecent + ", 1"));
+        if (boundary == null) {
+            return false;
+        }
+        //2. 查询摘要之后、上界之前（含）的对话
+        ChatHistorySummary summary = getSummary(appId);
+        LambdaQueryWrapper<ChatHistory> queryWrapper = Wrappers.lambdaQuery(ChatHistory.class)
+                .eq(ChatHistory::getAppId, appId)
+                .and(wrapper -> wrapper.lt(ChatHistory::getCreateTime, boundary.getCreateTime())
+                        .or(inner -> inner.eq(ChatHistory::getCreateTime, boundary.getCreateTime())
+                                .le(ChatHistory::getId, boundary.getId())));
+        afterSummary(queryWrapper, summary);
+        queryWrapper.orderByAsc(ChatHistory::getCreateTime)
+                .orderByAsc(ChatHistory::getId)
+                .last("limit " + batchSize);
+        List<ChatHistory> historyList = chatHistoryMapper.selectList(queryWrapper);
+        if (historyList.size() < chatMemoryConfig.getSummaryMinMessages()) {
+            return false;
+        }
+        //3. 之前的摘要 + 新增对话交给模型合并
+        ChatHistorySummaryService summaryService = chatHistorySummaryServiceFactory.chatHistorySummaryServicePrototype();
+        String newSummary = StrUtil.trim(summaryService.summarize(buildConversation(summary, historyList)));
+        if (StrUtil.isBlank(newSummary)) {
+            log.warn("模型返回的对话摘要为空, appId: {}", appId);
+            return false;
+        }
+        //4. 保存摘要和覆盖位置（模型调用期间对话历史可能已被删除，删除后不再写回摘要）
+        ChatHistory last = historyList.get(historyList.size() - 1);
+        if (!chatHistoryMapper.exists(Wrappers.lambdaQuery(ChatHistory.class)
+                .eq(ChatHistory::getAppId, appId)
+                .eq(ChatHistory::getId, last.getId()))) {
+            log.info("appId:{} 的对话历史已删除，放弃本次压缩结果", appId);
+            return false;
+        }
+        ChatHistorySummary updated = new ChatHistorySummary();
+        updated.setAppId(appId);
+        updated.setSummary(StrUtil.maxLength(newSummary, chatMemoryConfig.getSummaryMaxChars()));
+        updated.setLastHistoryId(last.getId());
+        updated.setLastCreateTime(last.getCreateTime());
+        updated.setSummarizedCount((summary == null ? 0 : summary.getSummarizedCount()) + historyList.size());
+        chatHistorySummaryMapper.upsert(updated);
+        //5. 下次创建 AI 服务时带着新摘要重建记忆
+        chatMemoryVersionStore.invalidate(appId);
+        log.info("appId:{} 压缩了 {} 条对话历史，累计 {} 条", appId, historyList.size(), updated.getSummarizedCount());
+        return historyList.size() >= batchSize;
+    }
+
+    private String buildConversation(ChatHistorySummary summary, List<ChatHistory> historyList) {
+        int maxChars = chatMemoryConfig.getSummaryMessageMaxChars();
+        StringBuilder conversation = new StringBuilder();
+        conversation.append("## 之前的摘要\n")
+                .append(summary == null ? "（无）" : summary.getSummary())
+                .append("\n\n## 新增的对话\n");
+        for (ChatHistory chatHistory : historyList) {
+            // 解压失败的记录不交给模型
+            if (!ChatMessageCodec.decompress(chatHistory)) {
+                continue;
+            }
+            String role = ChatHistoryMessageTypeEnum.USER.getValue().equals(chatHistory.getMessageType()) ? "用户" : "AI";
+            conversation.append("【").append(role).append("】")
+                    .append(StrUtil.maxLength(chatHistory.getMessage(), maxChars))
+                    .append("\n\n");
+        }
+        return conversation.toString();
+    }
+}
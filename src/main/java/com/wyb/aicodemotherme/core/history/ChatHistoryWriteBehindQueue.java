@@ -0,0 +1,483 @@
+package com.wyb.aicodemotherme.core.history;
+
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.json.JSONUtil;
+import com.wyb.aicodemotherme.config.ChatHistoryConfig;
+import com.wyb.aicodemotherme.constant.AppConstant;
+import com.wyb.aicodemotherme.exception.BusinessException;
+import com.wyb.aicodemotherme.exception.ErrorCode;
+import com.wyb.aicodemotherme.mapper.ChatHistoryMapper;
+import com.wyb.aicodemotherme.model.entity.ChatHistory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.NonTransientDataAccessResourceException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * 对话历史异步批量写入（write-behind）
+ * 1. 保存消息时只追加到本地溢写文件（每行一条 JSON）并放入内存队列，不等待 MySQL
+ * 2. 每隔 flushIntervalMillis 毫秒，或队列积累到 flushBatchSize 条时，用多行 INSERT 批量写入数据库，
+ *    单条 INSERT 同时受行数和 flushBatchMaxBytes 字节数限制
+ * 3. 每次写入前切换到新的溢写文件，旧文件封存；写入成功后删除所有封存的文件，写入失败时消息放回队首，
+ *    封存的文件原样保留，不重复写盘
+ * 4. 批量写入因数据错误失败时逐条重试，单独写入仍然失败的消息记入 rejected 文件并打印错误日志，不阻塞后面的消息；
+ *    数据库不可用时整批放回队首，按指数退避重试，退避期间请求线程上的 flushPending 直接返回，不在同一批失败的消息上阻塞
+ * 5. 队列积压超过 maxPendingMessages 条时拒绝保存新消息（不绕过队列同步写入，避免新消息先于排队的旧消息落库）
+ * 6. 进程崩溃后，启动时把残留的溢写文件重新入队；id 在入队时就已分配，重放时跳过主键重复的行，不会重复写入
+ * 队列里的消息和溢写文件（封存的文件 + 当前文件）里的消息始终一一对应
+ */
+@Slf4j
+@Component
+public class ChatHistoryWriteBehindQueue {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".jsonl";
+
+    /**
+     * 单独写入也失败的消息（不参与启动时的重放，需要人工处理）
+     */
+    private static final String REJECTED_FILE = "rejected.jsonl";
+
+    /**
+     * 估算 INSERT 语句大小时每行除消息外的固定开销（字节）
+     */
+    private static final int ROW_OVERHEAD_BYTES = 256;
+
+    @Resource
+    private ChatHistoryMapper chatHistoryMapper;
+
+    @Resource
+    private ChatHistoryConfig chatHistoryConfig;
+
+    private final Path spillDir = Path.of(AppConstant.CHAT_HISTORY_SPILL_DIR);
+
+    /**
+     * 保护 pending 队列和当前溢写文件
+     */
+    private final Object appendLock = new Object();
+
+    /**
+     * 同一时间只有一个线程写数据库
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final ArrayDeque<ChatHistory> pending = new ArrayDeque<>();
+
+    /**
+     * 已封存的溢写文件，其中的消息都还在 pending 队列里，写入成功后删除
+     */
+    private final List<Path> sealedSegments = new ArrayList<>();
+
+    private final AtomicLong segmentSequence = new AtomicLong();
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private Path segmentPath;
+
+    private FileChannel segmentChannel;
+
+    /**
+     * 当前溢写文件是否写入过消息（空文件不用封存）
+     */
+    private boolean segmentHasData;
+
+    /**
+     * 连续写入失败的次数（只在持有 flushLock 时访问）
+     */
+    private int consecutiveFailures;
+
+    /**
+     * 退避结束的时间戳，0 表示没有处于退避中
+     */
+    private volatile long nextRetryAtMillis;
+
+    private ScheduledExecutorService flushExecutor;
+
+    private volatile boolean started;
+
+    @PostConstruct
+    public void init() {
+        if (!Boolean.TRUE.equals(chatHistoryConfig.getWriteBehindEnabled())) {
+            return;
+        }
+        try {
+            Files.createDirectories(spillDir);
+            List<Path> leftoverSegments = listSegments();
+            synchronized (appendLock) {
+                openNewSegment();
+                // 上次进程退出前没有写入数据库的消息，重新入队，残留文件直接作为封存文件，写入成功后删除
+                for (Path leftoverSegment : leftoverSegments) {
+                    int recovered = recoverSegment(leftoverSegment);
+                    log.info("从溢写文件 {} 恢复 {} 条待写入的对话历史", leftoverSegment.getFileName(), recovered);
+                }
+            }
+        } catch (IOException e) {
+            log.error("初始化对话历史溢写目录失败，改为同步写入: {}", e.getMessage());
+            return;
+        }
+        long interval = Math.max(10L, chatHistoryConfig.getFlushIntervalMillis());
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(
+                ThreadUtil.newNamedThreadFactory("chat-history-flush-", true));
+        flushExecutor.scheduleWithFixedDelay(() -> flushQuietly(false), interval, interval, TimeUnit.MILLISECONDS);
+        started = true;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        flushExecutor.shutdown();
+        // 停机前忽略退避尽量写完，写不进去的留在溢写文件里，下次启动重放
+        flushQuietly(true);
+        synchronized (appendLock) {
+            closeSegment();
+        }
+    }
+
+    /**
+     * 消息入队（追加到溢写文件后立即返回）
+     *
+     * @param chatHistory 对话历史（id 和 createTime 需要提前设置）
+     * @return 是否入队成功，失败时调用方应同步写入
+     * @throws BusinessException 队列积压超过上限（数据库长时间写入失败）
+     */
+    public boolean enqueue(ChatHistory chatHistory) {
+        if (!started) {
+            return false;
+        }
+        int pendingSize;
+        synchronized (appendLock) {
+            if (pending.size() >= chatHistoryConfig.getMaxPendingMessages()) {
+                log.warn("对话历史待写入队列已积压 {} 条，拒绝保存新消息", pending.size());
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "对话历史保存繁忙，请稍后再试");
+            }
+            try {
+                appendToSegment(chatHistory);
+            } catch (IOException e) {
+                log.warn("写入对话历史溢写文件失败，改为同步写入: {}", e.getMessage());
+                return false;
+            }
+            pending.addLast(chatHistory);
+            pendingSize = pending.size();
+        }
+        // 积累够一批立即写入，不等定时任务
+        if (pendingSize >= chatHistoryConfig.getFlushBatchSize() && !isBackingOff()
+                && flushScheduled.compareAndSet(false, true)) {
+            flushExecutor.execute(() -> {
+                flushScheduled.set(false);
+                flushQuietly(false);
+            });
+        }
+        return true;
+    }
+
+    /**
+     * 读之前调用：把还没写入数据库的消息立即写入，保证读到刚保存的消息
+     * 数据库写入失败、处于退避期间时直接返回，调用方照常读取（刚保存的消息可能暂时读不到），由后台线程继续重试
+     */
+    public void flushPending() {
+        if (!started || isBackingOff()) {
+            return;
+        }
+        boolean hasPending;
+        synchronized (appendLock) {
+            hasPending = !pending.isEmpty();
+        }
+        // 正在写入的批次已经出队，也要等它写完
+        if (hasPending || flushLock.isLocked()) {
+            flushQuietly(false);
+        }
+    }
+
+    /**
+     * 数据库写入失败、正在退避重试，此时数据库里的对话历史落后于已保存的消息
+     */
+    public boolean isBackingOff() {
+        return started && System.currentTimeMillis() < nextRetryAtMillis;
+    }
+
+    /**
+     * @param force 是否忽略退避立即写入（停机时使用）
+     */
+    private void flushQuietly(boolean force) {
+        try {
+            flush(force);
+        } catch (Exception e) {
+            log.error("批量写入对话历史失败，{} 毫秒后重试: {}",
+                    Math.max(0L, nextRetryAtMillis - System.currentTimeMillis()), e.getMessage());
+        }
+    }
+
+    private void flush(boolean force) {
+        flushLock.lock();
+        try {
+            while (true) {
+                // 等锁期间上一次写入可能刚失败，退避结束前不再重试
+                if (!force && isBackingOff()) {
+                    return;
+                }
+                List<ChatHistory> batch;
+                List<Path> flushedSegments;
+                synchronized (appendLock) {
+                    if (pending.isEmpty()) {
+                        return;
+                    }
+                    batch = new ArrayList<>(pending);
+                    pending.clear();
+                    sealSegment();
+                    flushedSegments = new ArrayList<>(sealedSegments);
+                }
+                try {
+                    insertBatch(batch);
+                } catch (Exception e) {
+                    requeue(batch);
+                    onFlushFailed();
+                    throw e;
+                }
+                consecutiveFailures = 0;
+                nextRetryAtMillis = 0L;
+                synchronized (appendLock) {
+                    sealedSegments.removeAll(flushedSegments);
+                }
+                flushedSegments.forEach(this::deleteSegment);
+                log.debug("批量写入对话历史 {} 条", batch.size());
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 封存当前溢写文件，之后入队的消息写到新文件里
+     */
+    private void sealSegment() {
+        if (!segmentHasData) {
+            return;
+        }
+        Path currentSegment = segmentPath;
+        closeSegment();
+        try {
+            openNewSegment();
+            sealedSegments.add(currentSegment);
+        } catch (IOException e) {
+            // 新文件打不开时退回原文件继续追加，不封存也就不会被删除，本批次照常写入（重放时跳过已写入的行）
+            log.warn("切换对话历史溢写文件失败: {}", e.getMessage());
+            reopenSegment(currentSegment);
+        }
+    }
+
+    /**
+     * 连续失败时退避时间翻倍，不超过 retryBackoffMaxMillis
+     */
+    private void onFlushFailed() {
+        consecutiveFailures++;
+        long initial = Math.max(1L, chatHistoryConfig.getRetryBackoffInitialMillis());
+        long backoff = Math.min(chatHistoryConfig.getRetryBackoffMaxMillis(),
+                initial << Math.min(consecutiveFailures - 1, 20));
+        nextRetryAtMillis = System.currentTimeMillis() + backoff;
+    }
+
+    /**
+     * 按行数和字节数切分成多条 INSERT
+     */
+    private void insertBatch(List<ChatHistory> batch) {
+        int maxRows = Math.max(1, chatHistoryConfig.getFlushBatchSize());
+        long maxBytes = Math.max(1L, chatHistoryConfig.getFlushBatchMaxBytes());
+        int from = 0;
+        while (from < batch.size()) {
+            int to = from;
+            long bytes = 0;
+            // 每条 INSERT 至少一行，单行超过字节上限时单独写入
+            while (to < batch.size() && to - from < maxRows) {
+                long rowBytes = estimateRowBytes(batch.get(to));
+                if (to > from && bytes + rowBytes > maxBytes) {
+                    break;
+                }
+                bytes += rowBytes;
+                to++;
+            }
+            insertChunk(batch.subList(from, to));
+            from = to;
+        }
+    }
+
+    /**
+     * 写入一条多行 INSERT；数据错误导致失败时逐条重试，单独写入仍失败的消息记入 rejected 文件
+     * 数据库连接类的错误直接抛出，整批退避重试（已写入的行重放时跳过）
+     */
+    private void insertChunk(List<ChatHistory> chunk) {
+        try {
+            chatHistoryMapper.insertBatchSkipDuplicate(chunk);
+        } catch (RuntimeException e) {
+            if (isDatabaseUnavailable(e)) {
+                throw e;
+            }
+            if (chunk.size() > 1) {
+                log.warn("批量写入 {} 条对话历史失败，改为逐条写入: {}", chunk.size(), e.getMessage());
+                for (ChatHistory chatHistory : chunk) {
+                    insertChunk(List.of(chatHistory));
+                }
+                return;
+            }
+            reject(chunk.get(0), e);
+        }
+    }
+
+    private static boolean isDatabaseUnavailable(Exception e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof NonTransientDataAccessResourceException;
+    }
+
+    /**
+     * 按 UTF-8 每个字符最多 3 字节、二进制转义后最多 2 倍估算一行的大小（不必为估算编码整条消息）
+     */
+    private static long estimateRowBytes(ChatHistory chatHistory) {
+        String message = chatHistory.getMessage();
+        byte[] messageGzip = chatHistory.getMessageGzip();
+        return ROW_OVERHEAD_BYTES + (message == null ? 0L : message.length() * 3L)
+                + (messageGzip == null ? 0L : messageGzip.length * 2L);
+    }
+
+    /**
+     * 无法写入数据库的消息追加到 rejected 文件，保留原始内容以便人工修复后补录
+     */
+    private void reject(ChatHistory chatHistory, Exception e) {
+        log.error("对话历史无法写入数据库，已移入 {}，id: {}, appId: {}, error: {}",
+                REJECTED_FILE, chatHistory.getId(), chatHistory.getAppId(), e.getMessage());
+        byte[] line = (JSONUtil.toJsonStr(chatHistory) + "\n").getBytes(StandardCharsets.UTF_8);
+        try {
+            Files.write(spillDir.resolve(REJECTED_FILE), line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException ioException) {
+            log.error("写入对话历史 rejected 文件失败，id: {}, error: {}", chatHistory.getId(), ioException.getMessage());
+        }
+    }
+
+    /**
+     * 写入失败：消息按原顺序放回队首，封存的溢写文件保留，下次写入成功后再删除
+     */
+    private void requeue(List<ChatHistory> batch) {
+        synchronized (appendLock) {
+            for (int i = batch.size() - 1; i >= 0; i--) {
+                pending.addFirst(batch.get(i));
+            }
+        }
+    }
+
+    private int recoverSegment(Path segment) throws IOException {
+        int recovered = 0;
+        for (String line : Files.readAllLines(segment, StandardCharsets.UTF_8)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                pending.addLast(JSONUtil.toBean(line, ChatHistory.class));
+                recovered++;
+            } catch (Exception e) {
+                // 崩溃时最后一行可能没写完整
+                log.warn("跳过无法解析的对话历史溢写记录: {}", e.getMessage());
+            }
+        }
+        if (recovered > 0) {
+            sealedSegments.add(segment);
+        } else {
+            Files.delete(segment);
+        }
+        return recovered;
+    }
+
+    private void appendToSegment(ChatHistory chatHistory) throws IOException {
+        if (segmentChannel == null) {
+            throw new IOException("溢写文件不可用");
+        }
+        byte[] line = (JSONUtil.toJsonStr(chatHistory) + "\n").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(line);
+        while (buffer.hasRemaining()) {
+            segmentChannel.write(buffer);
+        }
+        segmentHasData = true;
+        if (Boolean.TRUE.equals(chatHistoryConfig.getSpillFsync())) {
+            segmentChannel.force(false);
+        }
+    }
+
+    private void openNewSegment() throws IOException {
+        Path newSegment = spillDir.resolve(String.format("%s%d-%06d%s", SEGMENT_PREFIX, System.currentTimeMillis(),
+                segmentSequence.incrementAndGet() % 1_000_000, SEGMENT_SUFFIX));
+        segmentChannel = FileChannel.open(newSegment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segmentPath = newSegment;
+        segmentHasData = false;
+    }
+
+    private void reopenSegment(Path segment) {
+        try {
+            segmentChannel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            segmentPath = segment;
+            segmentHasData = true;
+        } catch (IOException e) {
+            log.error("重新打开对话历史溢写文件失败: {}", e.getMessage());
+            segmentChannel = null;
+            segmentPath = null;
+            started = false;
+        }
+    }
+
+    private void closeSegment() {
+        if (segmentChannel == null) {
+            return;
+        }
+        try {
+            segmentChannel.close();
+        } catch (IOException e) {
+            log.warn("关闭对话历史溢写文件失败: {}", e.getMessage());
+        }
+        segmentChannel = null;
+    }
+
+    private void deleteSegment(Path segment) {
+        if (segment == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(segment);
+        } catch (IOException e) {
+            log.warn("删除对话历史溢写文件失败: {}", e.getMessage());
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> children = Files.list(spillDir)) {
+            return children.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+}
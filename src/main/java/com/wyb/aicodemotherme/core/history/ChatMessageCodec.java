@@ -0,0 +1,96 @@
+package com.wyb.aicodemotherme.core.history;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.util.ZipUtil;
+import com.wyb.aicodemotherme.model.entity.ChatHistory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * 对话历史消息压缩
+ * Vue 项目的 AI 消息包含所有工具调用结果，单条可能有几百 KB；超过阈值的消息 gzip 后存入二进制列 messageGzip，
+ * message 置空，并标记 messageCompressed = 1
+ * 读取时只对真正要返回 / 使用的记录解压，解压后把标记置回 0，重复调用不会重复解压
+ * 解压失败的记录不会把压缩内容当作消息返回，而是换成占位文本
+ */
+@Slf4j
+public final class ChatMessageCodec {
+
+    private static final int COMPRESSED = 1;
+
+    private static final int PLAIN = 0;
+
+    private static final String CORRUPTED_MESSAGE = "[消息内容已损坏，无法读取]";
+
+    private ChatMessageCodec() {
+    }
+
+    /**
+     * 消息超过阈值时压缩（压缩后更小才使用压缩结果，已压缩的记录直接跳过）
+     *
+     * @param chatHistory    对话历史
+     * @param thresholdBytes 压缩阈值（字节），不大于 0 时不压缩
+     */
+    public static void compressIfLarge(ChatHistory chatHistory, int thresholdBytes) {
+        if (Integer.valueOf(COMPRESSED).equals(chatHistory.getMessageCompressed())) {
+            return;
+        }
+        chatHistory.setMessageCompressed(PLAIN);
+        String message = chatHistory.getMessage();
+        if (thresholdBytes <= 0 || message == null || message.length() * 3L < thresholdBytes) {
+            // 按 UTF-8 最多 3 字节估算，肯定不超过阈值时不必编码
+            return;
+        }
+        byte[] raw = message.getBytes(StandardCharsets.UTF_8);
+        if (raw.length < thresholdBytes) {
+            return;
+        }
+        byte[] gzipped = ZipUtil.gzip(raw);
+        if (gzipped.length < raw.length) {
+            chatHistory.setMessage("");
+            chatHistory.setMessageGzip(gzipped);
+            chatHistory.setMessageCompressed(COMPRESSED);
+        }
+    }
+
+    /**
+     * 解压消息（未压缩的记录直接跳过）
+     *
+     * @param chatHistory 对话历史
+     * @return 消息是否可用，解压失败时返回 false，消息被替换为占位文本
+     */
+    public static boolean decompress(ChatHistory chatHistory) {
+        if (chatHistory == null || !Integer.valueOf(COMPRESSED).equals(chatHistory.getMessageCompressed())) {
+            return true;
+        }
+        try {
+            // 早期版本把压缩结果 Base64 编码后存在 message 列里
+            byte[] gzipped = chatHistory.getMessageGzip() != null
+                    ? chatHistory.getMessageGzip() : Base64.decode(chatHistory.getMessage());
+            byte[] raw = ZipUtil.unGzip(gzipped);
+            chatHistory.setMessage(new String(raw, StandardCharsets.UTF_8));
+            chatHistory.setMessageGzip(null);
+            chatHistory.setMessageCompressed(PLAIN);
+            return true;
+        } catch (Exception e) {
+            log.error("解压对话历史失败，id: {}, error: {}", chatHistory.getId(), e.getMessage());
+            chatHistory.setMessage(CORRUPTED_MESSAGE);
+            chatHistory.setMessageGzip(null);
+            chatHistory.setMessageCompressed(PLAIN);
+            return false;
+        }
+    }
+
+    /**
+     * 批量解压
+     *
+     * @param chatHistories 对话历史
+     */
+    public static void decompressAll(Collection<ChatHistory> chatHistories) {
+        if (chatHistories != null) {
+            chatHistories.forEach(ChatMessageCodec::decompress);
+        }
+    }
+}
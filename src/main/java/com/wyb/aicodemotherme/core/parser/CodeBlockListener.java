@@ -0,0 +1,35 @@
+package com.wyb.aicodemotherme.core.parser;
+
+/**
+ * 流式代码块监听器
+ * 由 CodeFenceStreamParser 回调：代码块开始、内容增量、代码块完成
+ * 只关心完整代码块时可以直接用 lambda 实现 onBlockComplete
+ */
+@FunctionalInterface
+public interface CodeBlockListener {
+
+    /**
+     * 代码块开始（已读到 ```lang 换行）
+     *
+     * @param language 代码块语言
+     */
+    default void onBlockStart(String language) {
+    }
+
+    /**
+     * 代码块内容增量（每个 chunk 最多回调一次）
+     *
+     * @param language 代码块语言
+     * @param content  新增内容
+     */
+    default void onBlockContent(String language, String content) {
+    }
+
+    /**
+     * 代码块完成
+     *
+     * @param language 代码块语言
+     * @param code     完整代码，空白代码块时为空串
+     */
+    void onBlockComplete(String language, String code);
+}
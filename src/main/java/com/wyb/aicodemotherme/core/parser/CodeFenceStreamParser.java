@@ -0,0 +1,243 @@
+package com.wyb.aicodemotherme.core.parser;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Markdown 代码块（```lang ... ```）流式解析器
+ * 基于状态机逐字符扫描，可以直接喂入 Flux 的每个 chunk，代码块的内容增量和闭合都会回调给下游（例如保存器）
+ * 只需扫描一遍，不需要先拼出完整响应，也没有正则回溯
+ * 注意：每个实例只能对应一次流式响应，非线程安全
+ */
+public class CodeFenceStreamParser {
+
+    public static final String LANGUAGE_HTML = "html";
+
+    public static final String LANGUAGE_CSS = "css";
+
+    public static final String LANGUAGE_JS = "js";
+
+    /**
+     * 代码块围栏长度（```）
+     */
+    private static final int FENCE_LENGTH = 3;
+
+    /**
+     * 围栏后语言标识的最大长度，超过则认为不是代码块开头
+     */
+    private static final int MAX_INFO_LENGTH = 64;
+
+    private enum State {
+        /**
+         * 代码块之外的普通文本
+         */
+        TEXT,
+        /**
+         * 读取开头围栏后的语言标识（直到换行）
+         */
+        INFO,
+        /**
+         * 代码块内容
+         */
+        CODE
+    }
+
+    /**
+     * 代码块回调
+     */
+    private final CodeBlockListener blockListener;
+
+    /**
+     * 已经回调过的语言，每种语言只取第一个非空代码块（与原先正则 find 一次的语义一致）
+     */
+    private final Set<String> emittedLanguages = new HashSet<>();
+
+    private final StringBuilder infoBuilder = new StringBuilder();
+
+    private final StringBuilder codeBuilder = new StringBuilder();
+
+    /**
+     * 出现第一个围栏之前的普通文本，用于 HTML 没有代码块时的兜底；出现围栏后置为 null 不再收集
+     */
+    private StringBuilder plainTextBuilder = new StringBuilder();
+
+    private State state = State.TEXT;
+
+    /**
+     * 当前连续反引号的个数（可能跨 chunk）
+     */
+    private int backtickCount = 0;
+
+    private String currentLanguage;
+
+    /**
+     * 当前代码块是否需要回调（同一语言已经取过就跳过）
+     */
+    private boolean captureCurrentBlock;
+
+    /**
+     * 当前代码块已经通过 onBlockContent 回调出去的长度
+     */
+    private int notifiedLength;
+
+    public CodeFenceStreamParser(CodeBlockListener blockListener) {
+        this.blockListener = blockListener;
+    }
+
+    /**
+     * 追加一段流式内容
+     *
+     * @param chunk 流式片段
+     */
+    public void append(String chunk) {
+        if (chunk == null) {
+            return;
+        }
+        for (int i = 0; i < chunk.length(); i++) {
+            accept(chunk.charAt(i));
+        }
+        // 每个 chunk 结束后把新增的代码内容一次性回调出去
+        if (state == State.CODE) {
+            notifyContent();
+        }
+    }
+
+    /**
+     * 流结束：未闭合的代码块（例如输出被 maxTokens 截断）也尽量交给下游
+     */
+    public void finish() {
+        if (state == State.CODE) {
+            flushBackticks(codeBuilder);
+            closeBlock();
+        }
+        state = State.TEXT;
+        backtickCount = 0;
+    }
+
+    /**
+     * 是否已经解析出指定语言的代码块
+     *
+     * @param language 语言
+     * @return 是否存在
+     */
+    public boolean hasBlock(String language) {
+        return emittedLanguages.contains(language);
+    }
+
+    /**
+     * 获取没有任何代码块时的完整文本
+     *
+     * @return 完整文本，出现过代码块时返回 null
+     */
+    public String getPlainText() {
+        return plainTextBuilder == null ? null : plainTextBuilder.toString();
+    }
+
+    private void accept(char c) {
+        switch (state) {
+            case TEXT -> {
+                if (c == '`') {
+                    backtickCount++;
+                    if (backtickCount == FENCE_LENGTH) {
+                        openFence();
+                    }
+                    return;
+                }
+                if (plainTextBuilder != null) {
+                    flushBackticks(plainTextBuilder);
+                    plainTextBuilder.append(c);
+                }
+                backtickCount = 0;
+            }
+            case INFO -> {
+                if (c == '\n') {
+                    startBlock();
+                } else if (c == '`' || infoBuilder.length() >= MAX_INFO_LENGTH) {
+                    // 行内反引号或者过长的标识，不是代码块开头，回到普通文本
+                    state = State.TEXT;
+                    backtickCount = c == '`' ? 1 : 0;
+                } else {
+                    infoBuilder.append(c);
+                }
+            }
+            case CODE -> {
+                if (c == '`') {
+                    backtickCount++;
+                    if (backtickCount == FENCE_LENGTH) {
+                        closeBlock();
+                    }
+                    return;
+                }
+                flushBackticks(codeBuilder);
+                codeBuilder.append(c);
+            }
+        }
+    }
+
+    private void openFence() {
+        backtickCount = 0;
+        infoBuilder.setLength(0);
+        // 一旦出现代码块就不再需要兜底文本，释放内存
+        plainTextBuilder = null;
+        state = State.INFO;
+    }
+
+    private void startBlock() {
+        currentLanguage = normalizeLanguage(infoBuilder.toString());
+        codeBuilder.setLength(0);
+        notifiedLength = 0;
+        captureCurrentBlock = !emittedLanguages.contains(currentLanguage);
+        state = State.CODE;
+        if (captureCurrentBlock) {
+            blockListener.onBlockStart(currentLanguage);
+        }
+    }
+
+    private void closeBlock() {
+        notifyContent();
+        backtickCount = 0;
+        state = State.TEXT;
+        String code = codeBuilder.toString();
+        codeBuilder.setLength(0);
+        if (!captureCurrentBlock) {
+            return;
+        }
+        captureCurrentBlock = false;
+        if (code.isBlank()) {
+            // 空白代码块不计入，后面同语言的代码块还可以被采用
+            blockListener.onBlockComplete(currentLanguage, "");
+            return;
+        }
+        emittedLanguages.add(currentLanguage);
+        blockListener.onBlockComplete(currentLanguage, code);
+    }
+
+    private void notifyContent() {
+        if (!captureCurrentBlock || codeBuilder.length() == notifiedLength) {
+            return;
+        }
+        blockListener.onBlockContent(currentLanguage, codeBuilder.substring(notifiedLength));
+        notifiedLength = codeBuilder.length();
+    }
+
+    /**
+     * 把不足一个围栏的反引号还原到内容中
+     */
+    private void flushBackticks(StringBuilder target) {
+        for (int i = 0; i < backtickCount; i++) {
+            target.append('`');
+        }
+        backtickCount = 0;
+    }
+
+    /**
+     * 统一语言标识：忽略大小写，javascript 视为 js
+     */
+    private static String normalizeLanguage(String info) {
+        String language = info.trim().toLowerCase();
+        if ("javascript".equals(language)) {
+            return LANGUAGE_JS;
+        }
+        return language;
+    }
+}
@@ -0,0 +1,204 @@
+package com.wyb.aicodemotherme.core.preview;
+
+import cn.hutool.core.io.FileUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 预览文件热点缓存 (Caffeine)
+ * 缓存策略
+ * 只缓存不超过 256KB 的小文件，按文件字节数加权，总量不超过 64MB
+ * key 为文件路径 + 修改时间，文件被重写后修改时间变化自然不会命中旧内容
+ * 文本类文件加载时预先压缩好 gzip / deflate 两份，按 Accept-Encoding 选择返回，不必每次请求都压缩
+ * 保存器和文件工具重写文件时主动失效，避免修改时间精度不够导致读到旧内容
+ */
+@Slf4j
+public final class PreviewFileCache {
+
+    public static final String ENCODING_GZIP = "gzip";
+
+    public static final String ENCODING_DEFLATE = "deflate";
+
+    /**
+     * 单个文件超过该大小不进缓存，直接从磁盘读取（可以走 sendfile）
+     */
+    private static final long MAX_CACHEABLE_FILE_SIZE = 256 * 1024;
+
+    /**
+     * 缓存总字节数上限（原文件 + 压缩版本）
+     */
+    private static final long MAX_TOTAL_WEIGHT = 64L * 1024 * 1024;
+
+    /**
+     * 太小的文件压缩收益不大，不生成压缩版本
+     */
+    private static final int MIN_COMPRESS_SIZE = 1024;
+
+    /**
+     * 需要预压缩的文本类文件后缀
+     */
+    private static final Set<String> COMPRESSIBLE_SUFFIXES = Set.of(
+            "html", "css", "js", "mjs", "json", "map", "svg", "txt", "xml"
+    );
+
+    private static final Cache<FileKey, CachedFile> FILE_CACHE = Caffeine.newBuilder()
+            .maximumWeight(MAX_TOTAL_WEIGHT) //按字节数加权
+            .weigher((FileKey key, CachedFile value) -> value.weight())
+            .expireAfterAccess(Duration.ofMinutes(30)) //30 分钟不访问就过期
+            .build();
+
+    private PreviewFileCache() {
+    }
+
+    /**
+     * 缓存 key：文件绝对路径 + 修改时间
+     */
+    private record FileKey(String path, long lastModified) {
+    }
+
+    /**
+     * 缓存的文件内容及其压缩版本（没有压缩版本时为 null）
+     */
+    public record CachedFile(byte[] content, byte[] gzipContent, byte[] deflateContent) {
+
+        private int weight() {
+            return content.length
+                    + (gzipContent == null ? 0 : gzipContent.length)
+                    + (deflateContent == null ? 0 : deflateContent.length);
+        }
+
+        /**
+         * 获取指定编码的内容
+         *
+         * @param encoding gzip / deflate，null 表示原文
+         * @return 内容，没有该编码的版本时返回 null
+         */
+        public byte[] getContent(String encoding) {
+            if (encoding == null) {
+                return content;
+            }
+            return switch (encoding) {
+                case ENCODING_GZIP -> gzipContent;
+                case ENCODING_DEFLATE -> deflateContent;
+                default -> null;
+            };
+        }
+
+        /**
+         * 是否有压缩版本（有的话响应需要带 Vary: Accept-Encoding）
+         */
+        public boolean isCompressed() {
+            return gzipContent != null;
+        }
+    }
+
+    /**
+     * 文件大小是否适合放进缓存
+     */
+    public static boolean isCacheable(long fileSize) {
+        return fileSize <= MAX_CACHEABLE_FILE_SIZE;
+    }
+
+    /**
+     * 获取文件内容（带缓存）
+     *
+     * @param path         文件路径
+     * @param lastModified 文件修改时间
+     * @return 缓存的文件，读取失败时返回 null
+     */
+    public static CachedFile get(Path path, long lastModified) {
+        FileKey key = new FileKey(path.toAbsolutePath().normalize().toString(), lastModified);
+        return FILE_CACHE.get(key, k -> load(path));
+    }
+
+    /**
+     * 文件或目录被重写 / 删除时失效对应的缓存（目录会失效其下所有文件）
+     *
+     * @param path 文件或目录路径
+     */
+    public static void invalidate(Path path) {
+        String pathStr = path.toAbsolutePath().normalize().toString();
+        String dirPrefix = pathStr + File.separator;
+        FILE_CACHE.asMap().keySet()
+                .removeIf(key -> key.path().equals(pathStr) || key.path().startsWith(dirPrefix));
+    }
+
+    /**
+     * 根据请求的 Accept-Encoding 选择返回的编码，优先 gzip
+     *
+     * @param acceptEncoding 请求头
+     * @return gzip / deflate，不接受压缩时返回 null
+     */
+    public static String negotiateEncoding(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        boolean acceptDeflate = false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim().toLowerCase();
+            // q=0 表示明确不接受
+            if (tokens.length > 1 && tokens[1].trim().matches("q=0(\\.0*)?")) {
+                continue;
+            }
+            if (ENCODING_GZIP.equals(coding)) {
+                return ENCODING_GZIP;
+            }
+            if (ENCODING_DEFLATE.equals(coding)) {
+                acceptDeflate = true;
+            }
+        }
+        return acceptDeflate ? ENCODING_DEFLATE : null;
+    }
+
+    private static CachedFile load(Path path) {
+        try {
+            byte[] content = Files.readAllBytes(path);
+            String suffix = FileUtil.getSuffix(path.getFileName().toString()).toLowerCase();
+            if (content.length < MIN_COMPRESS_SIZE || !COMPRESSIBLE_SUFFIXES.contains(suffix)) {
+                return new CachedFile(content, null, null);
+            }
+            return new CachedFile(content, gzip(content), deflate(content));
+        } catch (IOException e) {
+            log.warn("读取预览文件失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(content.length / 3);
+        try (OutputStream out = new GZIPOutputStream(buffer) {
+            {
+                // 只在加载时压缩一次，用最高压缩级别
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            out.write(content);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] content) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(content.length / 3);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (OutputStream out = new DeflaterOutputStream(buffer, deflater)) {
+            out.write(content);
+        } finally {
+            deflater.end();
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -3,12 +3,14 @@ package com.wyb.aicodemotherme.core.saver;
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.StrUtil;
 import com.wyb.aicodemotherme.constant.AppConstant;
+import com.wyb.aicodemotherme.core.preview.PreviewFileCache;
 import com.wyb.aicodemotherme.exception.BusinessException;
 import com.wyb.aicodemotherme.exception.ErrorCode;
 import com.wyb.aicodemotherme.model.enums.CodeGenTypeEnum;
 
 import java.io.File;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 
 /**
  * 抽象代码文件保存器 - 模板方法模式
@@ -47,6 +49,23 @@ public abstract class CodeFileSaverTemplate<T> {
 
 
 
+    /**
+     * 保存单个代码块：流式解析时代码块一闭合就直接落盘，不必等待整段响应结束
+     * @param language 代码块语言（html / css / js）
+     * @param code 代码内容
+     * @param appId 应用 ID
+     * @return 保存的文件对象，当前类型不需要该语言时返回 null
+     */
+    public final File saveCodeBlock(String language, String code, Long appId) {
+        String fileName = resolveFileName(language);
+        if (fileName == null || StrUtil.isBlank(code)) {
+            return null;
+        }
+        String baseDirPath = buildUniqueDir(appId);
+        writeToFile(baseDirPath, fileName, code.trim());
+        return new File(baseDirPath, fileName);
+    }
+
     /**
      * 验证输入参数(可由子类覆盖)
      * @param result
@@ -83,6 +102,8 @@ public abstract class CodeFileSaverTemplate<T> {
         if(StrUtil.isNotBlank(content)){
             String filePath = dirPath + File.separator + filename; // 文件路径 = 目录路径 + 分隔符("/") + 文件名
             FileUtil.writeString(content, filePath, StandardCharsets.UTF_8);
+            // 文件被重写，失效预览缓存
+            PreviewFileCache.invalidate(Path.of(filePath));
         }
     }
 
@@ -93,6 +114,13 @@ public abstract class CodeFileSaverTemplate<T> {
      */
     protected abstract CodeGenTypeEnum getCodeType();
 
+    /**
+     * 根据代码块语言获取要保存的文件名（具体实现由子类提供）
+     * @param language 代码块语言
+     * @return 文件名，不需要该语言时返回 null
+     */
+    protected abstract String resolveFileName(String language);
+
     /**
      * 保存文件（具体实现由子类提供）
      * @param result
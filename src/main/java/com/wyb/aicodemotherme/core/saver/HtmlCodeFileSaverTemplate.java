@@ -2,6 +2,7 @@ package com.wyb.aicodemotherme.core.saver;
 
 import cn.hutool.core.util.StrUtil;
 import com.wyb.aicodemotherme.ai.model.HtmlCodeResult;
+import com.wyb.aicodemotherme.core.parser.CodeFenceStreamParser;
 import com.wyb.aicodemotherme.exception.BusinessException;
 import com.wyb.aicodemotherme.exception.ErrorCode;
 import com.wyb.aicodemotherme.model.enums.CodeGenTypeEnum;
@@ -20,6 +21,16 @@ public class HtmlCodeFileSaverTemplate extends CodeFileSaverTemplate<HtmlCodeRes
         return CodeGenTypeEnum.HTML;
     }
 
+    /**
+     * 单文件模式只保存 HTML 代码块
+     * @param language
+     * @return
+     */
+    @Override
+    protected String resolveFileName(String language) {
+        return CodeFenceStreamParser.LANGUAGE_HTML.equals(language) ? "index.html" : null;
+    }
+
     /**
      * 保存文件
      * @param result
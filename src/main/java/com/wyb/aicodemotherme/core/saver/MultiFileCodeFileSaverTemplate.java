@@ -2,6 +2,7 @@ package com.wyb.aicodemotherme.core.saver;
 
 import cn.hutool.core.util.StrUtil;
 import com.wyb.aicodemotherme.ai.model.MultiFileCodeResult;
+import com.wyb.aicodemotherme.core.parser.CodeFenceStreamParser;
 import com.wyb.aicodemotherme.exception.BusinessException;
 import com.wyb.aicodemotherme.exception.ErrorCode;
 import com.wyb.aicodemotherme.model.enums.CodeGenTypeEnum;
@@ -16,6 +17,16 @@ public class MultiFileCodeFileSaverTemplate extends CodeFileSaverTemplate<MultiF
         return CodeGenTypeEnum.MULTI_FILE;
     }
 
+    @Override
+    protected String resolveFileName(String language) {
+        return switch (language) {
+            case CodeFenceStreamParser.LANGUAGE_HTML -> "index.html";
+            case CodeFenceStreamParser.LANGUAGE_CSS -> "style.css";
+            case CodeFenceStreamParser.LANGUAGE_JS -> "script.js";
+            default -> null;
+        };
+    }
+
     @Override
     protected void saveFiles(MultiFileCodeResult result, String baseDirPath) {
         writeToFile(baseDirPath,"index.html",result.getHtmlCode());
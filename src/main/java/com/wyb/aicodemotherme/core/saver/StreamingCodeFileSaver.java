@@ -0,0 +1,160 @@
+package com.wyb.aicodemotherme.core.saver;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.StrUtil;
+import com.wyb.aicodemotherme.constant.AppConstant;
+import com.wyb.aicodemotherme.core.preview.PreviewFileCache;
+import com.wyb.aicodemotherme.core.parser.CodeBlockListener;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 流式代码文件保存器（边生成边写入）
+ * 代码块内容一到达就追加写入临时目录 {type}_{appId}.generating/{runId} 下的同名文件，预览接口可以读取到半成品；
+ * 代码块闭合后再原子替换到正式目录 {type}_{appId}，保证正式目录里的文件始终是完整的
+ * 同一应用重叠的多次生成（重复提交、旧的流还没结束就重试）各自使用独立的 runId 子目录，结束时只清理自己的目录
+ * 注意：每个实例只能对应一次流式响应，非线程安全
+ */
+@Slf4j
+public class StreamingCodeFileSaver implements CodeBlockListener {
+
+    private static final AtomicLong RUN_SEQUENCE = new AtomicLong();
+
+    private final CodeFileSaverTemplate<?> saverTemplate;
+
+    /**
+     * 正式目录：tmp/code_output/{type}_{appId}
+     */
+    private final Path targetDir;
+
+    /**
+     * 临时目录：tmp/code_output/{type}_{appId}.generating/{runId}
+     */
+    private final Path stagingDir;
+
+    /**
+     * 当前正在写入的临时文件
+     */
+    private Path currentStagingFile;
+
+    private Writer currentWriter;
+
+    /**
+     * 当前代码块是否已经写入过非空白内容（用于去掉开头的空白）
+     */
+    private boolean contentStarted;
+
+    StreamingCodeFileSaver(CodeFileSaverTemplate<?> saverTemplate, Long appId) {
+        this.saverTemplate = saverTemplate;
+        this.targetDir = Path.of(saverTemplate.buildUniqueDir(appId));
+        this.stagingDir = Path.of(targetDir + AppConstant.CODE_OUTPUT_STAGING_SUFFIX).resolve(nextRunId());
+    }
+
+    /**
+     * 按创建顺序递增的 runId（定长，按名称排序即按时间排序），预览时取最新的一次
+     */
+    private static String nextRunId() {
+        return String.format("%013d-%06d", System.currentTimeMillis(), RUN_SEQUENCE.incrementAndGet() % 1_000_000);
+    }
+
+    @Override
+    public void onBlockStart(String language) {
+        String fileName = saverTemplate.resolveFileName(language);
+        if (fileName == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(stagingDir);
+            currentStagingFile = stagingDir.resolve(fileName);
+            currentWriter = Files.newBufferedWriter(currentStagingFile, StandardCharsets.UTF_8);
+            contentStarted = false;
+        } catch (IOException e) {
+            log.error("创建临时文件失败: {}", e.getMessage(), e);
+            closeCurrentWriter();
+        }
+    }
+
+    @Override
+    public void onBlockContent(String language, String content) {
+        if (currentWriter == null) {
+            return;
+        }
+        if (!contentStarted) {
+            content = StrUtil.trimStart(content);
+            if (content.isEmpty()) {
+                return;
+            }
+            contentStarted = true;
+        }
+        try {
+            currentWriter.write(content);
+            // 每个 chunk 刷一次盘，预览时能看到最新内容
+            currentWriter.flush();
+        } catch (IOException e) {
+            log.error("写入临时文件失败: {}", e.getMessage(), e);
+            closeCurrentWriter();
+        }
+    }
+
+    @Override
+    public void onBlockComplete(String language, String code) {
+        if (currentWriter == null) {
+            return;
+        }
+        Path stagingFile = currentStagingFile;
+        closeCurrentWriter();
+        try {
+            if (StrUtil.isBlank(code)) {
+                Files.deleteIfExists(stagingFile);
+                return;
+            }
+            Path targetFile = targetDir.resolve(stagingFile.getFileName());
+            moveAtomically(stagingFile, targetFile);
+            PreviewFileCache.invalidate(targetFile);
+            log.info("代码块 {} 保存成功，路径为：{}", language, targetFile.toAbsolutePath());
+        } catch (IOException e) {
+            log.error("代码块 {} 保存失败: {}", language, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 流结束（完成、出错或取消）时只清理本次生成的临时目录，不影响同一应用正在进行的其他生成
+     */
+    public void close() {
+        closeCurrentWriter();
+        FileUtil.del(stagingDir);
+    }
+
+    /**
+     * 获取正式目录
+     */
+    public Path getTargetDir() {
+        return targetDir;
+    }
+
+    private void closeCurrentWriter() {
+        IoUtil.close(currentWriter);
+        currentWriter = null;
+        currentStagingFile = null;
+    }
+
+    /**
+     * 同一文件系统内原子替换，不支持时退化为普通替换
+     */
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -2,6 +2,9 @@ package com.wyb.aicodemotherme.mapper;
 
 import com.wyb.aicodemotherme.model.entity.ChatHistory;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
 * @author 28442
@@ -11,6 +14,19 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 */
 public interface ChatHistoryMapper extends BaseMapper<ChatHistory> {
 
+    /**
+     * 批量写入对话历史（多行 INSERT，主键重复的行跳过，其他错误照常抛出）
+     * @param list 对话历史（id 和 createTime 需要提前设置）
+     * @return 写入行数
+     */
+    int insertBatchSkipDuplicate(@Param("list") List<ChatHistory> list);
+
+    /**
+     * 应用最新一条对话历史的 id（按 (appId, createTime, id) 索引倒序取一条，排除逻辑删除的记录）
+     * @param appId 应用 id
+     * @return 最新一条对话历史 id，没有对话时返回 null
+     */
+    Long selectLatestId(@Param("appId") Long appId);
 }
 
 
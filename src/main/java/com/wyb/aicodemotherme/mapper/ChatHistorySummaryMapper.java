@@ -0,0 +1,18 @@
+package com.wyb.aicodemotherme.mapper;
+
+import com.wyb.aicodemotherme.model.entity.ChatHistorySummary;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+
+/**
+* @description 针对表【chat_history_summary(对话历史摘要)】的数据库操作Mapper
+* @Entity com.wyb.aicodemotherme.model.entity.ChatHistorySummary
+*/
+public interface ChatHistorySummaryMapper extends BaseMapper<ChatHistorySummary> {
+
+    /**
+     * 写入或覆盖应用的摘要
+     * @param summary 摘要
+     * @return 影响行数
+     */
+    int upsert(ChatHistorySummary summary);
+}
@@ -53,5 +53,15 @@ public class AppQueryRequest extends PageRequest implements Serializable {
      */
     private Long userId;
 
+    /**
+     * 滚动加载模式：不查询总数，多查一条判断是否还有下一页
+     */
+    private Boolean loadMore;
+
+    /**
+     * 滚动加载模式下是否返回近似总数（短时间缓存的 COUNT 结果）
+     */
+    private Boolean approximateTotal;
+
     private static final long serialVersionUID = 1L;
 }
\ No newline at end of file
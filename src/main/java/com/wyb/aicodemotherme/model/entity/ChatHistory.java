@@ -32,6 +32,18 @@ public class ChatHistory implements Serializable {
     @TableField(value = "message")
     private String message;
 
+    /**
+     * 消息是否压缩存储（0-否，1-是，压缩内容在 messageGzip 中，message 为空）
+     */
+    @TableField(value = "messageCompressed")
+    private Integer messageCompressed;
+
+    /**
+     * gzip 压缩后的消息
+     */
+    @TableField(value = "messageGzip")
+    private byte[] messageGzip;
+
     /**
      * user/ai
      */
@@ -0,0 +1,67 @@
+package com.wyb.aicodemotherme.model.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.io.Serializable;
+import java.util.Date;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 对话历史摘要（每个应用一条）
+ * @TableName chat_history_summary
+ */
+@TableName(value ="chat_history_summary")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatHistorySummary implements Serializable {
+    /**
+     * 应用id
+     */
+    @TableId(value = "appId", type = IdType.INPUT)
+    private Long appId;
+
+    /**
+     * 摘要内容
+     */
+    @TableField(value = "summary")
+    private String summary;
+
+    /**
+     * 摘要覆盖到的最后一条对话历史id
+     */
+    @TableField(value = "lastHistoryId")
+    private Long lastHistoryId;
+
+    /**
+     * 摘要覆盖到的最后一条对话历史创建时间
+     */
+    @TableField(value = "lastCreateTime")
+    private Date lastCreateTime;
+
+    /**
+     * 已压缩进摘要的对话条数
+     */
+    @TableField(value = "summarizedCount")
+    private Integer summarizedCount;
+
+    /**
+     * 创建时间
+     */
+    @TableField(value = "createTime")
+    private Date createTime;
+
+    /**
+     * 更新时间
+     */
+    @TableField(value = "updateTime")
+    private Date updateTime;
+
+    @TableField(exist = false)
+    private static final long serialVersionUID = 1L;
+}
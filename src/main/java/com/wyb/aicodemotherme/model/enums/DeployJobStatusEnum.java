@@ -0,0 +1,51 @@
+package com.wyb.aicodemotherme.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+
+/**
+ * 部署任务状态枚举
+ */
+@Getter
+public enum DeployJobStatusEnum {
+
+    PENDING("排队中", "pending"),
+    BUILDING("构建中", "building"),
+    PUBLISHING("发布中", "publishing"),
+    SUCCESS("部署成功", "success"),
+    FAILED("部署失败", "failed");
+
+    private final String text;
+
+    private final String value;
+
+    DeployJobStatusEnum(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 是否为结束状态
+     */
+    public boolean isFinished() {
+        return this == SUCCESS || this == FAILED;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value 枚举值的value
+     * @return 枚举值
+     */
+    public static DeployJobStatusEnum getEnumByValue(String value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (DeployJobStatusEnum anEnum : DeployJobStatusEnum.values()) {
+            if (anEnum.value.equals(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+}
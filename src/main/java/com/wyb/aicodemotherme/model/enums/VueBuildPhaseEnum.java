@@ -0,0 +1,41 @@
+package com.wyb.aicodemotherme.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+
+/**
+ * Vue 项目构建阶段枚举
+ */
+@Getter
+public enum VueBuildPhaseEnum {
+
+    INSTALL("安装依赖", "install"),
+    BUILD("打包构建", "build");
+
+    private final String text;
+
+    private final String value;
+
+    VueBuildPhaseEnum(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value 枚举值的value
+     * @return 枚举值
+     */
+    public static VueBuildPhaseEnum getEnumByValue(String value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (VueBuildPhaseEnum anEnum : VueBuildPhaseEnum.values()) {
+            if (anEnum.value.equals(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+}
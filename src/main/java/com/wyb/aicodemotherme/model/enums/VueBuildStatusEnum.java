@@ -0,0 +1,43 @@
+package com.wyb.aicodemotherme.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+
+/**
+ * Vue 项目构建状态枚举
+ */
+@Getter
+public enum VueBuildStatusEnum {
+
+    QUEUED("排队中", "queued"),
+    BUILDING("构建中", "building"),
+    SUCCESS("构建成功", "success"),
+    FAILED("构建失败", "failed");
+
+    private final String text;
+
+    private final String value;
+
+    VueBuildStatusEnum(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value 枚举值的value
+     * @return 枚举值
+     */
+    public static VueBuildStatusEnum getEnumByValue(String value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (VueBuildStatusEnum anEnum : VueBuildStatusEnum.values()) {
+            if (anEnum.value.equals(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+}
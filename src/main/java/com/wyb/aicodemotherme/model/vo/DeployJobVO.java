@@ -0,0 +1,50 @@
+package com.wyb.aicodemotherme.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 部署任务视图
+ */
+@Data
+public class DeployJobVO implements Serializable {
+
+    /**
+     * 任务 id
+     */
+    private String jobId;
+
+    /**
+     * 应用 id
+     */
+    private Long appId;
+
+    /**
+     * 任务状态：pending/building/publishing/success/failed
+     */
+    private String status;
+
+    /**
+     * 进度描述或失败原因
+     */
+    private String message;
+
+    /**
+     * 部署成功后的访问地址
+     */
+    private String deployUrl;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+
+    /**
+     * 更新时间
+     */
+    private LocalDateTime updateTime;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -1,6 +1,8 @@
 package com.wyb.aicodemotherme.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.wyb.aicodemotherme.core.deploy.DeployJob;
 import com.wyb.aicodemotherme.model.dto.app.AppAddRequest;
 import com.wyb.aicodemotherme.model.dto.app.AppQueryRequest;
 import com.wyb.aicodemotherme.model.entity.App;
@@ -42,6 +44,14 @@ public interface AppService extends IService<App> {
      */
     QueryWrapper<App> getQueryWrapper(AppQueryRequest appQueryRequest);
 
+    /**
+     * 分页查询应用封装列表
+     * loadMore 为 true 时使用滚动加载模式：不执行 COUNT，多查一条判断是否还有下一页，可选返回缓存的近似总数
+     * @param appQueryRequest 查询条件
+     * @return 应用分页
+     */
+    Page<AppVO> listAppVOByPage(AppQueryRequest appQueryRequest);
+
     /**
      * 获取应用封装列表
      * @param appList
@@ -59,10 +69,10 @@ public interface AppService extends IService<App> {
     Flux<String> chatToGenCode(Long appId, String message, User loginUser);
 
     /**
-     * 应用部署
+     * 提交异步部署任务（构建和发布在部署线程池中执行）
      * @param appId 应用ID
      * @param loginUser 登录用户
-     * @return 部署后的访问地址
+     * @return 部署任务
      */
-    String deployApp(Long appId, User loginUser);
+    DeployJob submitDeployJob(Long appId, User loginUser);
 }
@@ -2,11 +2,11 @@ package com.wyb.aicodemotherme.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.wyb.aicodemotherme.ai.memory.TokenBudgetChatMemory;
 import com.wyb.aicodemotherme.model.dto.chathistory.ChatHistoryQueryRequest;
 import com.wyb.aicodemotherme.model.entity.ChatHistory;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.wyb.aicodemotherme.model.entity.User;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 
 import java.time.LocalDateTime;
 
@@ -27,6 +27,16 @@ public interface ChatHistoryService extends IService<ChatHistory> {
      */
     boolean addChatMessage(Long appId, String message, String messageType, Long userId);
 
+    /**
+     * 添加 AI 回复失败的错误消息
+     * 错误消息不会进入对话记忆，保存后记忆版本标记失效，下次创建 AI 服务时从数据库重建记忆
+     * @param appId 应用id
+     * @param message 错误消息
+     * @param userId 用户id
+     * @return
+     */
+    boolean addChatErrorMessage(Long appId, String message, Long userId);
+
     /**
      * 根据应用 ID 删除应用的历史对话
      * @param appId 应用 ID
@@ -45,12 +55,14 @@ public interface ChatHistoryService extends IService<ChatHistory> {
      * 分页获取应用的历史对话（游标查询）
      * @param appId 应用 ID
      * @param lastCreateTime 最后创建时间
+     * @param lastId 最后一条记录的 id
      * @param pageSize 页面大小
      * @param loginUser 登录用户
      * @return
      */
     Page<ChatHistory> listAppChatHistoryByPage(Long appId, int pageSize,
                                                LocalDateTime lastCreateTime,
+                                               Long lastId,
                                                User loginUser);
 
     /**
@@ -60,5 +72,5 @@ public interface ChatHistoryService extends IService<ChatHistory> {
      * @param maxCount
      * @return 加载成功的条数
      */
-    int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount);
+    int loadChatHistoryToMemory(Long appId, TokenBudgetChatMemory chatMemory, int maxCount);
 }
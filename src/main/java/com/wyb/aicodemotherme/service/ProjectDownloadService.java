@@ -1,5 +1,6 @@
 package com.wyb.aicodemotherme.service;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 public interface ProjectDownloadService {
@@ -8,7 +9,8 @@ public interface ProjectDownloadService {
      * 下载代码
      * @param projectPath
      * @param downloadFileName
+     * @param request
      * @param response
      */
-    void downloadProjectAsZip(String projectPath, String downloadFileName, HttpServletResponse response);
-}
\ No newline at end of file
+    void downloadProjectAsZip(String projectPath, String downloadFileName, HttpServletRequest request, HttpServletResponse response);
+}
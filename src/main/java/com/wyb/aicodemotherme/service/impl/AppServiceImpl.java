@@ -2,17 +2,25 @@ package com.wyb.aicodemotherme.service.impl;
 
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.ObjUtil;
 import cn.hutool.core.util.RandomUtil;
 import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.wyb.aicodemotherme.ai.AiCodeGenTypeRoutingService;
 import com.wyb.aicodemotherme.ai.AiCodeGenTypeRoutingServiceFactory;
+import com.wyb.aicodemotherme.ai.model.message.StreamMessage;
+import com.wyb.aicodemotherme.common.PageRequest;
+import com.wyb.aicodemotherme.common.ScrollPage;
+import com.wyb.aicodemotherme.config.AppListConfig;
 import com.wyb.aicodemotherme.constant.AppConstant;
 import com.wyb.aicodemotherme.core.AiCodeGeneratorFacade;
-import com.wyb.aicodemotherme.core.builder.VueProjectBuilder;
+import com.wyb.aicodemotherme.core.builder.VueBuildScheduler;
+import com.wyb.aicodemotherme.core.cache.GoodAppPageCache;
+import com.wyb.aicodemotherme.core.deploy.DeployJob;
+import com.wyb.aicodemotherme.core.deploy.DeployJobManager;
+import com.wyb.aicodemotherme.core.deploy.VersionedSiteDeployer;
 import com.wyb.aicodemotherme.core.handler.StreamHandlerExecutor;
 import com.wyb.aicodemotherme.exception.BusinessException;
 import com.wyb.aicodemotherme.exception.ErrorCode;
@@ -23,12 +31,17 @@ import com.wyb.aicodemotherme.model.entity.App;
 import com.wyb.aicodemotherme.model.entity.User;
 import com.wyb.aicodemotherme.model.enums.ChatHistoryMessageTypeEnum;
 import com.wyb.aicodemotherme.model.enums.CodeGenTypeEnum;
+import com.wyb.aicodemotherme.model.enums.DeployJobStatusEnum;
 import com.wyb.aicodemotherme.model.vo.AppVO;
 import com.wyb.aicodemotherme.model.vo.UserVO;
 import com.wyb.aicodemotherme.service.AppService;
 import com.wyb.aicodemotherme.mapper.AppMapper;
 import com.wyb.aicodemotherme.service.ChatHistoryService;
 import com.wyb.aicodemotherme.service.UserService;
+import com.wyb.aicodemotherme.util.CacheKeyUtils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
@@ -37,11 +50,13 @@ import reactor.core.publisher.Flux;
 
 import java.io.File;
 import java.io.Serializable;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -66,7 +81,33 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
     private StreamHandlerExecutor streamHandlerExecutor;
 
     @Resource
-    private VueProjectBuilder vueProjectBuilder;
+    private VueBuildScheduler vueBuildScheduler;
+
+    @Resource
+    private VersionedSiteDeployer versionedSiteDeployer;
+
+    @Resource
+    private DeployJobManager deployJobManager;
+
+    @Resource
+    private AppListConfig appListConfig;
+
+    @Resource
+    private GoodAppPageCache goodAppPageCache;
+
+    /**
+     * 滚动加载模式的近似总数（key 为去掉分页参数后的查询条件）
+     * 总数本来就是近似值，新增、删除应用不主动失效，按 TTL 过期；只有应用名称、优先级、所属用户变化时整体失效
+     */
+    private Cache<String, Long> approximateTotalCache;
+
+    @PostConstruct
+    public void initApproximateTotalCache() {
+        approximateTotalCache = Caffeine.newBuilder()
+                .maximumSize(appListConfig.getApproximateTotalMaxEntries())
+                .expireAfterWrite(Duration.ofSeconds(appListConfig.getApproximateTotalTtlSeconds()))
+                .build();
+    }
 
     @Resource
     private AiCodeGenTypeRoutingServiceFactory aiCodeGenTypeRoutingServiceFactory;
@@ -152,10 +193,10 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         queryWrapper.eq(ObjUtil.isNotNull(priority), "priority", priority);
         queryWrapper.eq(ObjUtil.isNotNull(userId), "userId", userId);
 
-        //如果 appName 有值，则拼 AND appName LIKE '%xxx%'（MP 默认会自动加 %）
-        queryWrapper.like(StrUtil.isNotBlank(appName), "appName", appName);
+        //应用名称和初始化 prompt 走全文索引，cover 仍然拼 LIKE '%xxx%'（MP 默认会自动加 %）
+        applyKeywordFilter(queryWrapper, "appName", appName);
         queryWrapper.like(StrUtil.isNotBlank(cover), "cover", cover);
-        queryWrapper.like(StrUtil.isNotBlank(initPrompt), "initPrompt", initPrompt);
+        applyKeywordFilter(queryWrapper, "initPrompt", initPrompt);
 
         //StrUtil.isNotEmpty(sortField)：作为 condition
         //sortField 不为空才会排序，否则不拼 ORDER BY
@@ -163,6 +204,82 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         return queryWrapper;
     }
 
+    /**
+     * 关键词检索：使用 ngram 全文索引做短语匹配（MATCH ... AGAINST IN BOOLEAN MODE），
+     * 结果与 LIKE '%关键词%' 基本一致，但不需要全表扫描；关键词过短或未开启全文检索时退回 LIKE
+     * @param queryWrapper 查询条件
+     * @param column 列名（需要有对应的全文索引）
+     * @param keyword 关键词
+     */
+    private void applyKeywordFilter(QueryWrapper<App> queryWrapper, String column, String keyword) {
+        if (StrUtil.isBlank(keyword)) {
+            return;
+        }
+        // 去掉双引号后整体作为短语，用户输入里的 + - * 等布尔运算符在短语内不生效
+        String phrase = StrUtil.trim(keyword.replace('"', ' '));
+        if (!Boolean.TRUE.equals(appListConfig.getFulltextSearchEnabled())
+                || phrase.codePointCount(0, phrase.length()) < appListConfig.getFulltextMinKeywordLength()) {
+            queryWrapper.like(column, keyword);
+            return;
+        }
+        queryWrapper.apply("match(" + column + ") against({0} in boolean mode)", "\"" + phrase + "\"");
+    }
+
+    /**
+     * 分页查询应用封装列表
+     * @param appQueryRequest 查询条件
+     * @return 应用分页
+     */
+    @Override
+    public Page<AppVO> listAppVOByPage(AppQueryRequest appQueryRequest) {
+        long pageNum = appQueryRequest.getPageNum();
+        long pageSize = appQueryRequest.getPageSize();
+        QueryWrapper<App> queryWrapper = this.getQueryWrapper(appQueryRequest);
+        if (!Boolean.TRUE.equals(appQueryRequest.getLoadMore())) {
+            // 普通分页：COUNT + 分页查询
+            Page<App> appPage = this.page(Page.of(pageNum, pageSize), queryWrapper);
+            Page<AppVO> appVOPage = new Page<>(pageNum, pageSize, appPage.getTotal());
+            appVOPage.setRecords(getAppVOList(appPage.getRecords()));
+            return appVOPage;
+        }
+        // 滚动加载：不执行 COUNT，多查一条判断是否还有下一页
+        ThrowUtils.throwIf(pageNum < 1 || pageSize < 1, ErrorCode.PARAMS_ERROR, "分页参数错误");
+        long offset = (pageNum - 1) * pageSize;
+        List<App> appList = this.list(queryWrapper.last("limit " + offset + ", " + (pageSize + 1)));
+        boolean hasMore = appList.size() > pageSize;
+        if (hasMore) {
+            appList = appList.subList(0, (int) pageSize);
+        }
+        // 已知的总数下界：前面的页 + 本页 + （有下一页时）至少一条
+        long knownTotal = offset + appList.size() + (hasMore ? 1 : 0);
+        ScrollPage<AppVO> appVOPage = new ScrollPage<>(pageNum, pageSize);
+        appVOPage.setHasMore(hasMore);
+        if (Boolean.TRUE.equals(appQueryRequest.getApproximateTotal())) {
+            appVOPage.setTotal(Math.max(knownTotal, getApproximateTotal(appQueryRequest)));
+            appVOPage.setTotalApproximate(true);
+        } else {
+            appVOPage.setTotal(knownTotal);
+            appVOPage.setTotalApproximate(false);
+        }
+        appVOPage.setRecords(getAppVOList(appList));
+        return appVOPage;
+    }
+
+    /**
+     * 近似总数：同一查询条件在缓存有效期内只执行一次 COUNT
+     */
+    private long getApproximateTotal(AppQueryRequest appQueryRequest) {
+        // 总数与分页、排序参数无关，key 里不包含这些参数
+        return approximateTotalCache.get(CacheKeyUtils.generateAppQueryKey(appQueryRequest, false), key -> {
+            AppQueryRequest countRequest = new AppQueryRequest();
+            BeanUtil.copyProperties(appQueryRequest, countRequest);
+            // 不拼 ORDER BY（排序方向保留默认值）
+            countRequest.setSortField(null);
+            countRequest.setSortOrder(new PageRequest().getSortOrder());
+            return this.count(this.getQueryWrapper(countRequest));
+        });
+    }
+
     /**
      * 获取应用封装列表
      * @param appList
@@ -223,20 +340,23 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         chatHistoryService.addChatMessage(appId, message, ChatHistoryMessageTypeEnum.USER.getValue(), loginUser.getId());
 
         // 6. 调用 AI 生成代码
-        Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(message, codeGenTypeEnum, appId);
+        Flux<StreamMessage> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(message, codeGenTypeEnum, appId);
 
         //7. 收集AI响应内容并在完成之后记录到对话历史（根据不同类型进行收集）
         return streamHandlerExecutor.doExecute(codeStream,chatHistoryService,appId,loginUser,codeGenTypeEnum);
     }
 
+    @Override
+    public DeployJob submitDeployJob(Long appId, User loginUser) {
+        // 权限等校验在接口线程同步完成，构建和发布交给部署线程池
+        App app = getDeployableApp(appId, loginUser);
+        return deployJobManager.submit(appId, loginUser.getId(), progressListener -> doDeploy(app, progressListener));
+    }
+
     /**
-     * 应用部署
-     * @param appId 应用ID
-     * @param loginUser 登录用户
-     * @return 部署后的访问地址
+     * 部署前校验：参数、应用存在、仅本人可以部署
      */
-    @Override
-    public String deployApp(Long appId, User loginUser) {
+    private App getDeployableApp(Long appId, User loginUser) {
         // 1. 参数校验
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
         ThrowUtils.throwIf(loginUser == null, ErrorCode.NOT_LOGIN_ERROR, "用户未登录");
@@ -247,6 +367,18 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         if (!app.getUserId().equals(loginUser.getId())) {
             throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "无权限部署该应用");
         }
+        return app;
+    }
+
+    /**
+     * 执行部署：构建（Vue 项目）、发布、更新部署信息
+     *
+     * @param app              已校验的应用
+     * @param progressListener 部署进度回调
+     * @return 可访问的 URL
+     */
+    private String doDeploy(App app, Consumer<DeployJobStatusEnum> progressListener) {
+        Long appId = app.getId();
         // 4. 检查是否已有 deployKey
         String deployKey = app.getDeployKey();
         // 没有则生成 6 位 deployKey（大小写字母 + 数字）
@@ -267,8 +399,9 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         // 7. Vue 项目特殊处理：执行构建
         CodeGenTypeEnum codeGenTypeEnum = CodeGenTypeEnum.getEnumByValue(codeGenType);
         if (codeGenTypeEnum == CodeGenTypeEnum.VUE_PROJECT) {
-            // Vue 项目需要构建
-            boolean buildSuccess = vueProjectBuilder.buildProject(sourceDirPath);
+            progressListener.accept(DeployJobStatusEnum.BUILDING);
+            // Vue 项目需要构建（通过构建调度器排队，部署优先级最高，等待构建完成）
+            boolean buildSuccess = vueBuildScheduler.submit(sourceDirPath, VueBuildScheduler.BuildPriority.HIGH).join();
             ThrowUtils.throwIf(!buildSuccess, ErrorCode.SYSTEM_ERROR, "Vue 项目构建失败，请检查代码和依赖");
             // 检查 dist 目录是否存在
             File distDir = new File(sourceDirPath, "dist");
@@ -278,14 +411,9 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
             log.info("Vue 项目构建成功，将部署 dist 目录: {}", distDir.getAbsolutePath());
         }
 
-        // 8. 复制文件到部署目录
-        String deployDirPath = AppConstant.CODE_DEPLOY_ROOT_DIR + File.separator + deployKey;
-        try {
-            //把源目录内容复制到部署目录,true 表示覆盖复制
-            FileUtil.copyContent(sourceDir, new File(deployDirPath), true);
-        } catch (Exception e) {
-            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "部署失败：" + e.getMessage());
-        }
+        // 8. 发布到部署目录：写入新的版本目录（未变化的文件硬链接复用），再原子切换软链接
+        progressListener.accept(DeployJobStatusEnum.PUBLISHING);
+        versionedSiteDeployer.publish(sourceDir, deployKey);
         // 9. 更新应用的 deployKey 和部署时间
         App updateApp = new App();
         updateApp.setId(appId);
@@ -314,6 +442,8 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         if (appId <= 0) {
             return false;
         }
+        // 精选应用被删除时才需要刷新精选应用缓存，删除前先查出优先级
+        boolean goodApp = isGoodApp(appId);
         // 先删除关联的对话历史
         try {
             chatHistoryService.deleteByAppId(appId);
@@ -322,7 +452,43 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
             log.error("删除应用关联对话历史失败: {}",e);
         }
         // 删除应用
-        return super.removeById(id);
+        boolean result = super.removeById(id);
+        if (result && goodApp) {
+            goodAppPageCache.invalidate();
+        }
+        return result;
+    }
+
+    /**
+     * 应用名称、优先级、所属用户变化会影响常用筛选条件下的总数，此时近似总数缓存整体失效
+     * （部署等只更新其他字段的常规更新不失效，避免首页每次都重新 COUNT）；
+     * 只有更新前或更新后是精选应用时，精选应用缓存才失效
+     *
+     * @param app 应用
+     * @return 是否成功
+     */
+    @Override
+    public boolean updateById(App app) {
+        boolean affectsGoodApps = AppConstant.GOOD_APP_PRIORITY.equals(app.getPriority()) || isGoodApp(app.getId());
+        boolean result = super.updateById(app);
+        if (result && (app.getAppName() != null || app.getPriority() != null || app.getUserId() != null)) {
+            approximateTotalCache.invalidateAll();
+        }
+        if (result && affectsGoodApps) {
+            goodAppPageCache.invalidate();
+        }
+        return result;
+    }
+
+    /**
+     * 应用当前是否为精选应用
+     */
+    private boolean isGoodApp(Long appId) {
+        if (appId == null) {
+            return false;
+        }
+        App app = this.getOne(new QueryWrapper<App>().select("priority").eq("id", appId));
+        return app != null && AppConstant.GOOD_APP_PRIORITY.equals(app.getPriority());
     }
 }
 
@@ -5,30 +5,41 @@ import cn.hutool.core.util.ObjUtil;
 import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.wyb.aicodemotherme.ai.memory.ChatMemoryVersionStore;
+import com.wyb.aicodemotherme.ai.memory.TokenBudgetChatMemory;
+import com.wyb.aicodemotherme.config.ChatHistoryConfig;
 import com.wyb.aicodemotherme.constant.UserConstant;
+import com.wyb.aicodemotherme.core.history.ChatHistoryCompactor;
+import com.wyb.aicodemotherme.core.history.ChatHistoryWriteBehindQueue;
+import com.wyb.aicodemotherme.core.history.ChatMessageCodec;
 import com.wyb.aicodemotherme.exception.BusinessException;
 import com.wyb.aicodemotherme.exception.ErrorCode;
 import com.wyb.aicodemotherme.exception.ThrowUtils;
 import com.wyb.aicodemotherme.model.dto.chathistory.ChatHistoryQueryRequest;
 import com.wyb.aicodemotherme.model.entity.App;
 import com.wyb.aicodemotherme.model.entity.ChatHistory;
+import com.wyb.aicodemotherme.model.entity.ChatHistorySummary;
 import com.wyb.aicodemotherme.model.entity.User;
 import com.wyb.aicodemotherme.model.enums.ChatHistoryMessageTypeEnum;
 import com.wyb.aicodemotherme.service.AppService;
 import com.wyb.aicodemotherme.service.ChatHistoryService;
 import com.wyb.aicodemotherme.mapper.ChatHistoryMapper;
+import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
 import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.UserMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -44,6 +55,21 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     @Lazy
     private AppService appService;
 
+    @Resource
+    private RedisChatMemoryStore redisChatMemoryStore;
+
+    @Resource
+    private ChatMemoryVersionStore chatMemoryVersionStore;
+
+    @Resource
+    private ChatHistoryWriteBehindQueue chatHistoryWriteBehindQueue;
+
+    @Resource
+    private ChatHistoryConfig chatHistoryConfig;
+
+    @Resource
+    private ChatHistoryCompactor chatHistoryCompactor;
+
     /**
      * 添加对话历史
      * @param appId 应用id
@@ -70,10 +96,40 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         chatHistory.setMessage(message);
         chatHistory.setMessageType(messageType);
         chatHistory.setUserId(userId);
-        return this.save(chatHistory);
+        // id 和创建时间在入队时确定，异步写入不会打乱消息顺序
+        chatHistory.setId(IdWorker.getId());
+        chatHistory.setCreateTime(new Date());
+        // 大消息压缩存储
+        ChatMessageCodec.compressIfLarge(chatHistory, chatHistoryConfig.getMessageCompressThresholdBytes());
+        //4. 优先异步批量写入（只追加本地溢写文件，不等待 MySQL），不可用时同步写入（队列积压超过上限时直接报错）
+        boolean saved = chatHistoryWriteBehindQueue.enqueue(chatHistory) || this.save(chatHistory);
+        if (saved) {
+            // 对话过程中记忆同步增长，推进记忆版本标记
+            chatMemoryVersionStore.advance(appId, chatHistory.getId());
+            // 一轮对话结束，交给后台判断是否需要压缩较早的对话
+            if (messageTypeEnum == ChatHistoryMessageTypeEnum.AI) {
+                chatHistoryCompactor.markDirty(appId);
+            }
+        }
+        return saved;
 
     }
 
+    /**
+     * 添加 AI 回复失败的错误消息
+     * 错误消息没有进入 Redis 记忆（记忆里只剩没有回复的用户消息），不能推进版本标记，而是让标记失效
+     * @param appId 应用id
+     * @param message 错误消息
+     * @param userId 用户id
+     * @return
+     */
+    @Override
+    public boolean addChatErrorMessage(Long appId, String message, Long userId) {
+        boolean saved = addChatMessage(appId, message, ChatHistoryMessageTypeEnum.AI.getValue(), userId);
+        chatMemoryVersionStore.invalidate(appId);
+        return saved;
+    }
+
     /**
      * 根据应用 ID 删除应用的历史对话
      * @param appId 应用 ID
@@ -84,7 +140,19 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
         LambdaQueryWrapper<ChatHistory> queryWrapper = new QueryWrapper<ChatHistory>()
                 .lambda().eq(ChatHistory::getAppId, appId);
-        return this.remove(queryWrapper);
+        // 先写入队列中的消息，避免删除后又被写回
+        chatHistoryWriteBehindQueue.flushPending();
+        // 对话历史删除后记忆也一并删除
+        chatMemoryVersionStore.invalidate(appId);
+        try {
+            redisChatMemoryStore.deleteMessages(appId);
+        } catch (Exception e) {
+            log.warn("删除对话记忆失败,appId : {},error : {}", appId, e.getMessage());
+        }
+        boolean removed = this.remove(queryWrapper);
+        // 摘要在对话历史之后删除（不受 Redis 异常影响），后台压缩发现历史已删除时也不会再写回摘要
+        chatHistoryCompactor.deleteSummary(appId);
+        return removed;
     }
 
 
@@ -106,6 +174,7 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         Long appId = chatHistoryQueryRequest.getAppId();
         Long userId = chatHistoryQueryRequest.getUserId();
         LocalDateTime lastCreateTime = chatHistoryQueryRequest.getLastCreateTime();
+        Long lastId = chatHistoryQueryRequest.getLastId();
         String sortField = chatHistoryQueryRequest.getSortField();
         String sortOrder = chatHistoryQueryRequest.getSortOrder();
 
@@ -117,9 +186,15 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
 
         //如果 appName 有值，则拼 AND appName LIKE '%xxx%'（MP 默认会自动加 %）
         queryWrapper.like(StrUtil.isNotBlank(message), "message", message);
+        // 压缩存储的大消息 message 列为空，内容搜索只覆盖未压缩（小于压缩阈值）的消息
+        queryWrapper.eq(StrUtil.isNotBlank(message), "messageCompressed", 0);
 
-        // 游标查询逻辑 - 只使用 createTime 作为游标
-        if (lastCreateTime != null) {
+        // 游标查询逻辑 - (createTime, id) 组合游标，createTime 只精确到秒，同一秒的记录靠 id 区分
+        // 没有传 lastId 时兼容旧的只按 createTime 的游标
+        if (lastCreateTime != null && lastId != null) {
+            queryWrapper.and(wrapper -> wrapper.lt("createTime", lastCreateTime)
+                    .or(inner -> inner.eq("createTime", lastCreateTime).lt("id", lastId)));
+        } else if (lastCreateTime != null) {
             queryWrapper.lt("createTime", lastCreateTime);
         }
         //StrUtil.isNotEmpty(sortField)：作为 condition
@@ -130,16 +205,18 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         if (StrUtil.isNotBlank(sortField)) {
             queryWrapper.orderBy(true,"ascend".equals(sortOrder), sortField);
         } else {
-            // 默认按创建时间降序排列（最新的在前）
-            queryWrapper.orderByDesc("createTime");
+            // 默认按创建时间降序排列（最新的在前），创建时间相同时按 id 降序，和游标顺序一致
+            queryWrapper.orderByDesc("createTime", "id");
         }
         return queryWrapper;
     }
 
     /**
      * 分页获取应用的历史对话（游标查询）
+     * 按 (appId, createTime, id) 索引顺序读取一页，不查询总数
      * @param appId 应用 ID
      * @param lastCreateTime 最后创建时间
+     * @param lastId 最后一条记录的 id
      * @param pageSize 页面大小
      * @param loginUser 登录用户
      * @return
@@ -147,6 +224,7 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     @Override
     public Page<ChatHistory> listAppChatHistoryByPage(Long appId, int pageSize,
                                                       LocalDateTime lastCreateTime,
+                                                      Long lastId,
                                                       User loginUser) {
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
         ThrowUtils.throwIf(pageSize <= 0 || pageSize > 50, ErrorCode.PARAMS_ERROR, "页面大小必须在1-50之间");
@@ -157,68 +235,96 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         boolean isAdmin = UserConstant.ADMIN_ROLE.equals(loginUser.getUserRole());
         boolean isCreator = app.getUserId().equals(loginUser.getId());
         ThrowUtils.throwIf(!isAdmin && !isCreator, ErrorCode.NO_AUTH_ERROR, "无权查看该应用的对话历史");
+        // 读取前写入队列中的消息，保证能读到刚保存的对话
+        chatHistoryWriteBehindQueue.flushPending();
         // 构建查询条件
         ChatHistoryQueryRequest queryRequest = new ChatHistoryQueryRequest();
         queryRequest.setAppId(appId);
         queryRequest.setLastCreateTime(lastCreateTime);
+        queryRequest.setLastId(lastId);
         QueryWrapper queryWrapper = this.getQueryWrapper(queryRequest);
         // 查询数据
         //因为这里是“游标分页”（lastCreateTime），不是传统 pageNum=2/3 那种翻页。
         //每次都从“游标点之前”取最新的一批，所以页码永远是 1。
-        return this.page(Page.of(1, pageSize), queryWrapper);
+        //游标分页用不到总数，不执行 COUNT 查询（records 不足 pageSize 条即没有更多）
+        Page<ChatHistory> chatHistoryPage = this.page(Page.of(1, pageSize, false), queryWrapper);
+        // 只解压本页返回的记录
+        ChatMessageCodec.decompressAll(chatHistoryPage.getRecords());
+        return chatHistoryPage;
     }
 
     /**
      * 加载对话历史到内存
+     * Redis 里的记忆已经是最新的（版本标记存在且记忆未过期）时直接跳过，不查库也不重写 Redis
+     * 存在对话摘要时摘要放在记忆最前面，只读取摘要之后的对话
      * @param appId
      * @param chatMemory
      * @param maxCount
      * @return 加载成功的条数
      */
     @Override
-    public int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount){
+    public int loadChatHistoryToMemory(Long appId, TokenBudgetChatMemory chatMemory, int maxCount){
 
         try {
-            //1. 构造查询条件，起始点为1用于排除最新的用户消息 (取最新的若干条，但排除最新的一条)
+            //0. 记忆已经是最新的，无需重建（先写入队列中的消息，再和数据库里最新的对话比较）
+            chatHistoryWriteBehindQueue.flushPending();
+            // 数据库写入失败、还在重试时，数据库缺少最近的对话，不用它覆盖 Redis 里的记忆
+            if (chatHistoryWriteBehindQueue.isBackingOff()) {
+                log.warn("appId:{} 的对话历史还未全部写入数据库，跳过从数据库重建记忆", appId);
+                return 0;
+            }
+            if (chatMemoryVersionStore.isUpToDate(appId)) {
+                log.info("appId:{} 的对话记忆已是最新，跳过从数据库加载", appId);
+                return 0;
+            }
+
+            //1. 构造查询条件 (取摘要之后最新的若干条)
+            ChatHistorySummary summary = chatHistoryCompactor.getSummary(appId);
             LambdaQueryWrapper<ChatHistory> queryWrapper = Wrappers.lambdaQuery(ChatHistory.class)
-                    .eq(ChatHistory::getAppId, appId)
-                    .orderByDesc(ChatHistory::getCreateTime);// 降序排，获取最新的几条信息
+                    .eq(ChatHistory::getAppId, appId);
+            ChatHistoryCompactor.afterSummary(queryWrapper, summary);
+            queryWrapper.orderByDesc(ChatHistory::getCreateTime)// 降序排，获取最新的几条信息
+                    .orderByDesc(ChatHistory::getId);
             Page<ChatHistory> page = new Page<>(1, maxCount + 1); // 多查 1 条
             List<ChatHistory> historyList = this.list(page,queryWrapper);
-             // 跳过最新 1 条
-            if (!historyList.isEmpty()) {
-                historyList.remove(0);
-            }
-            if(CollUtil.isEmpty(historyList)){
+            if(CollUtil.isEmpty(historyList) && summary == null){
                 return 0;
             }
+            Long lastHistoryId = historyList.isEmpty() ? summary.getLastHistoryId() : historyList.get(0).getId();
+            // 最新一条是刚保存、还没有回复的用户消息时跳过，AI 服务调用时会自己把它加入记忆
+            // （预热时最新一条通常是 AI 回复，需要保留）
+            if (!historyList.isEmpty()
+                    && ChatHistoryMessageTypeEnum.USER.getValue().equals(historyList.get(0).getMessageType())) {
+                historyList.remove(0);
+            } else if (historyList.size() > maxCount) {
+                historyList.remove(historyList.size() - 1);
+            }
 
             //2. 反转列表，确保按时间正序（老的在前，新的在后）
             historyList = historyList.reversed();
 
-            //3. 按时间顺序添加到记忆(chatMemory)中
-            int loadedCount = 0;
-            //3.1 先清理历史缓存，防止重复加载（可能会有之前缓存在 Redis 和 Caffeine 的还没过期）
-            chatMemory.clear();
-
-            //3.2 遍历取到的消息，加载到历史对话中(chatMemory)
+            //3. 转换为 langchain4j 的消息
+            List<ChatMessage> messages = new ArrayList<>(historyList.size());
             for (ChatHistory chatHistory : historyList) {
-                if(ChatHistoryMessageTypeEnum.USER.equals(chatHistory.getMessageType())){
+                // 只解压实际加入记忆的记录，解压失败的记录不加入记忆
+                if (!ChatMessageCodec.decompress(chatHistory)) {
+                    continue;
+                }
+                if(ChatHistoryMessageTypeEnum.USER.getValue().equals(chatHistory.getMessageType())){
                     //是用户消息,使用langchain4j的UserMessage存储
-                    chatMemory.add(UserMessage.from(chatHistory.getMessage()));
-                    loadedCount++;
-                }else {
-                    if (ChatHistoryMessageTypeEnum.AI.equals(chatHistory.getMessageType())) {
-                        //是ai消息，使用langchain4j的AiMessage存储
-                        chatMemory.add(AiMessage.from(chatHistory.getMessage()));
-                        loadedCount++;
-                    }
+                    messages.add(UserMessage.from(chatHistory.getMessage()));
+                }else if (ChatHistoryMessageTypeEnum.AI.getValue().equals(chatHistory.getMessageType())) {
+                    //是ai消息，使用langchain4j的AiMessage存储
+                    messages.add(AiMessage.from(chatHistory.getMessage()));
                 }
-
             }
 
-            log.info("成功为appId:{} 加载了 {} 条历史消息", appId, loadedCount);
-            return loadedCount;
+            //4. 按 token 预算裁剪后整体覆盖写入 Redis（一次写入，代替先 clear 再逐条 add 时每条都重写整个列表）
+            chatMemory.replaceAll(summary == null ? null : summary.getSummary(), messages);
+            chatMemoryVersionStore.markSynced(appId, lastHistoryId);
+
+            log.info("成功为appId:{} 加载了 {} 条历史消息", appId, messages.size());
+            return messages.size();
         }catch (Exception e){
             log.error("加载历史对话失败,appId : {},error : {}", appId, e.getMessage());
             return 0;
@@ -1,34 +1,92 @@
 package com.wyb.aicodemotherme.service.impl;
 
+import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.core.util.ZipUtil;
+import com.wyb.aicodemotherme.config.ProjectDownloadConfig;
+import com.wyb.aicodemotherme.constant.AppConstant;
+import com.wyb.aicodemotherme.core.download.ProjectZipWriter;
+import com.wyb.aicodemotherme.core.download.ProjectZipWriter.ZipSource;
 import com.wyb.aicodemotherme.exception.BusinessException;
 import com.wyb.aicodemotherme.exception.ErrorCode;
 import com.wyb.aicodemotherme.exception.ThrowUtils;
 import com.wyb.aicodemotherme.service.ProjectDownloadService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
-import java.io.FileFilter;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.util.Set;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
+/**
+ * 项目代码下载
+ * 打包好的 zip 按项目文件指纹缓存在 tmp/download_cache/{项目目录名}/{指纹}.zip，
+ * 项目没有变化时重复下载直接返回缓存文件（Tomcat 支持时走 sendfile 零拷贝），不再重新压缩
+ */
 @Service
 @Slf4j
 public class ProjectDownloadServiceImpl implements ProjectDownloadService {
 
+    /**
+     * Tomcat sendfile 相关的请求属性
+     */
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private static final String ARCHIVE_SUFFIX = ".zip";
+
+    @Resource
+    private ProjectDownloadConfig projectDownloadConfig;
+
+    /**
+     * 并行压缩线程池
+     */
+    private ForkJoinPool compressionPool;
+
+    @PostConstruct
+    public void init() {
+        Integer parallelism = projectDownloadConfig.getCompressionParallelism();
+        compressionPool = new ForkJoinPool(parallelism == null || parallelism <= 0
+                ? Runtime.getRuntime().availableProcessors() : parallelism);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        compressionPool.shutdownNow();
+    }
 
     /**
      * 下载代码
      * @param projectPath 项目路径
      * @param downloadFileName 下载文件名
+     * @param request
      * @param response
      */
     @Override
-    public void downloadProjectAsZip(String projectPath, String downloadFileName, HttpServletResponse response) {
+    public void downloadProjectAsZip(String projectPath, String downloadFileName, HttpServletRequest request, HttpServletResponse response) {
         // 基础校验
         ThrowUtils.throwIf(StrUtil.isBlank(projectPath), ErrorCode.PARAMS_ERROR, "项目路径不能为空");
         ThrowUtils.throwIf(StrUtil.isBlank(downloadFileName), ErrorCode.PARAMS_ERROR, "下载文件名不能为空");
@@ -36,16 +94,28 @@ public class ProjectDownloadServiceImpl implements ProjectDownloadService {
         ThrowUtils.throwIf(!projectDir.exists(), ErrorCode.NOT_FOUND_ERROR, "项目目录不存在");
         ThrowUtils.throwIf(!projectDir.isDirectory(), ErrorCode.PARAMS_ERROR, "指定路径不是目录");
         log.info("开始打包下载项目: {} -> {}.zip", projectPath, downloadFileName);
-        // 设置 HTTP 响应头
-        response.setStatus(HttpServletResponse.SC_OK);
-        response.setContentType("application/zip");
-        response.addHeader("Content-Disposition",
-                String.format("attachment; filename=\"%s.zip\"", downloadFileName));
-        // 定义文件过滤器
-        FileFilter filter = file -> isPathAllowed(projectDir.toPath(), file.toPath());
+        Path projectRoot = projectDir.toPath().toAbsolutePath().normalize();
+        int compressionLevel = Math.max(0, Math.min(9, projectDownloadConfig.getCompressionLevel()));
         try {
-            // 使用 Hutool 的 ZipUtil 直接将过滤后的目录压缩到响应输出流（不用下载到本地）
-            ZipUtil.zip(response.getOutputStream(), StandardCharsets.UTF_8, false, filter, projectDir);
+            // 遍历时直接跳过被忽略的目录
+            List<ZipSource> sources = ProjectZipWriter.collect(projectRoot);
+            // 设置 HTTP 响应头
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType("application/zip");
+            response.addHeader("Content-Disposition",
+                    String.format("attachment; filename=\"%s.zip\"", downloadFileName));
+            if (!Boolean.TRUE.equals(projectDownloadConfig.getArchiveCacheEnabled())) {
+                writeZip(sources, response.getOutputStream(), compressionLevel);
+                log.info("项目打包下载完成: {}", downloadFileName);
+                return;
+            }
+            Path cacheDir = Path.of(AppConstant.DOWNLOAD_CACHE_ROOT_DIR, projectRoot.getFileName().toString());
+            Path archive = cacheDir.resolve(ProjectZipWriter.fingerprint(sources, compressionLevel) + ARCHIVE_SUFFIX);
+            if (Files.isRegularFile(archive) && sendArchive(archive, request, response)) {
+                log.info("项目打包下载完成（命中缓存）: {}", downloadFileName);
+                return;
+            }
+            writeAndCacheArchive(sources, cacheDir, archive, compressionLevel, response);
             log.info("项目打包下载完成: {}", downloadFileName);
         } catch (Exception e) {
             log.error("项目打包下载异常", e);
@@ -53,54 +123,128 @@ public class ProjectDownloadServiceImpl implements ProjectDownloadService {
         }
     }
 
-
     /**
-     * 需要过滤的文件和目录名称
+     * 文件较多的项目并行压缩，其余单线程流式压缩
      */
-    private static final Set<String> IGNORED_NAMES = Set.of(
-            "node_modules",
-            ".git",
-            "dist",
-            "build",
-            ".DS_Store",
-            ".env",
-            "target",
-            ".mvn",
-            ".idea",
-            ".vscode"
-    );
+    private void writeZip(List<ZipSource> sources, OutputStream outputStream, int compressionLevel) throws IOException {
+        if (Boolean.TRUE.equals(projectDownloadConfig.getParallelCompressionEnabled())
+                && ProjectZipWriter.shouldWriteParallel(sources)) {
+            ProjectZipWriter.writeParallel(sources, outputStream, compressionLevel, compressionPool);
+            return;
+        }
+        ProjectZipWriter.write(sources, outputStream, compressionLevel);
+    }
 
     /**
-     * 需要过滤的文件扩展名
+     * 未命中缓存：边压缩边写给客户端，同时写入缓存临时文件，写完后原子改名为正式的缓存文件
      */
-    private static final Set<String> IGNORED_EXTENSIONS = Set.of(
-            ".log",
-            ".tmp",
-            ".cache"
-    );
+    private void writeAndCacheArchive(List<ZipSource> sources, Path cacheDir, Path archive, int compressionLevel,
+                                      HttpServletResponse response) throws IOException {
+        Files.createDirectories(cacheDir);
+        Path tempArchive = cacheDir.resolve(archive.getFileName() + ".tmp-" + IdUtil.fastSimpleUUID());
+        try {
+            try (OutputStream fileOutputStream = Files.newOutputStream(tempArchive)) {
+                writeZip(sources, new TeeOutputStream(response.getOutputStream(), fileOutputStream), compressionLevel);
+            }
+            try {
+                Files.move(tempArchive, archive, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempArchive, archive, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempArchive);
+        }
+        removeStaleArchives(cacheDir, archive);
+    }
 
     /**
-     * 检查路径是否允许包含在压缩包中
+     * 命中缓存：Tomcat 支持 sendfile 时交给内核直接发送文件，否则用 FileChannel 直接写出
+     * 发送前刷新修改时间，清理旧压缩包时按修改时间保留最近被下载过的文件
      *
-     * @param projectRoot 项目根目录
-     * @param fullPath    完整路径
-     * @return 是否允许
+     * @return 是否已发送，文件刚好被清理掉时返回 false，由调用方重新打包
      */
-    private boolean isPathAllowed(Path projectRoot, Path fullPath) {
-        // 获取相对路径
-        Path relativePath = projectRoot.relativize(fullPath);
-        // 检查路径中的每一部分
-        for (Path part : relativePath) {
-            String partName = part.toString();
-            // 检查是否在忽略名称列表中
-            if (IGNORED_NAMES.contains(partName)) {
-                return false;
-            }
-            // 检查文件扩展名
-            if (IGNORED_EXTENSIONS.stream().anyMatch(partName::endsWith)) {
-                return false;
+    private boolean sendArchive(Path archive, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long length;
+        try {
+            Files.setLastModifiedTime(archive, FileTime.fromMillis(System.currentTimeMillis()));
+            length = Files.size(archive);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        response.setContentLengthLong(length);
+        if (request != null && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, archive.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, 0L);
+            request.setAttribute(SENDFILE_END_ATTR, length);
+            return true;
+        }
+        try (FileChannel fileChannel = FileChannel.open(archive, StandardOpenOption.READ)) {
+            long position = 0;
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            while (position < length) {
+                position += fileChannel.transferTo(position, length - position, target);
             }
         }
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * 项目变化后旧指纹的压缩包不会再被命中，写入新包后删除
+     * 只删除超过 staleArchiveGraceMinutes 分钟没有被下载过的包：刚命中缓存的请求可能已经发出 Content-Length，
+     * 但 Tomcat 还没有打开文件，立即删除会让这次下载中断
+     */
+    private void removeStaleArchives(Path cacheDir, Path currentArchive) {
+        long expireBefore = System.currentTimeMillis()
+                - TimeUnit.MINUTES.toMillis(Math.max(0, projectDownloadConfig.getStaleArchiveGraceMinutes()));
+        try (Stream<Path> children = Files.list(cacheDir)) {
+            children.filter(path -> !path.equals(currentArchive))
+                    .filter(path -> path.getFileName().toString().endsWith(ARCHIVE_SUFFIX))
+                    .forEach(path -> {
+                        try {
+                            if (Files.getLastModifiedTime(path).toMillis() < expireBefore) {
+                                Files.deleteIfExists(path);
+                            }
+                        } catch (NoSuchFileException e) {
+                            // 已被其他请求清理
+                        } catch (IOException e) {
+                            log.warn("删除过期的下载缓存失败: {}", e.getMessage());
+                        }
+                    });
+        } catch (IOException e) {
+            log.warn("清理下载缓存失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 同时写入两个输出流（响应 + 缓存文件）
+     */
+    private static class TeeOutputStream extends OutputStream {
+
+        private final OutputStream first;
+
+        private final OutputStream second;
+
+        private TeeOutputStream(OutputStream first, OutputStream second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            first.write(b);
+            second.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            first.write(b, off, len);
+            second.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            first.flush();
+            second.flush();
+        }
+    }
+}
@@ -1,26 +1,162 @@
 package com.wyb.aicodemotherme.util;
 
-import cn.hutool.crypto.digest.DigestUtil;
-import cn.hutool.json.JSONUtil;
+import cn.hutool.core.util.StrUtil;
+import com.wyb.aicodemotherme.model.dto.app.AppQueryRequest;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 
 /**
- * 缓存 key 生成工具类（主页精选应用的 key）
+ * 缓存 key 生成工具类（主页精选应用、应用列表近似总数的 key）
+ * 同一套规范化的字段编码，按用途选择哈希：
+ * 1. 进程内的本地缓存用 64 位 FNV-1a，计算快
+ * 2. 公开接口共享的 Redis 缓存用 SHA-256，FNV 不抗碰撞，筛选条件由请求方控制，可以构造出与默认首页相同的 key 污染缓存
  *
  */
 public class CacheKeyUtils {
 
     /**
-     * 根据对象生成缓存key (JSON + MD5)
+     * FNV-1a 64 位参数
+     */
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * 根据应用查询条件生成规范化的本地缓存 key
+     * 只按固定顺序写入影响查询结果的字段，不依赖 JSON 序列化的字段顺序；
+     * 语义相同的请求得到相同的 key（例如空白的筛选条件等同于 null，没有排序字段时忽略排序方向，sortOrder 只区分升序和降序）
+     *
+     * @param appQueryRequest 查询条件
+     * @param withPaging      是否包含分页和排序参数（查询总数时不需要）
+     * @return 16 位十六进制的 64 位 FNV-1a 哈希
+     */
+    public static String generateAppQueryKey(AppQueryRequest appQueryRequest, boolean withPaging) {
+        return addAppQuery(new KeyHasher(null), appQueryRequest, withPaging).toHex();
+    }
+
+    /**
+     * 根据应用查询条件生成跨实例共享（Redis）的缓存 key，字段编码与 generateAppQueryKey 相同
      *
-     * @param obj 要生成key的对象
-     * @return MD5哈希后的缓存key
+     * @param appQueryRequest 查询条件
+     * @param withPaging      是否包含分页和排序参数
+     * @return 64 位十六进制的 SHA-256 哈希
      */
-    public static String generateKey(Object obj) {
-        if (obj == null) {
-            return DigestUtil.md5Hex("null");
+    public static String generateSharedAppQueryKey(AppQueryRequest appQueryRequest, boolean withPaging) {
+        try {
+            return addAppQuery(new KeyHasher(MessageDigest.getInstance("SHA-256")), appQueryRequest, withPaging).toHex();
+        } catch (NoSuchAlgorithmException e) {
+            // JDK 必定支持 SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static KeyHasher addAppQuery(KeyHasher hasher, AppQueryRequest appQueryRequest, boolean withPaging) {
+        if (appQueryRequest == null) {
+            return hasher;
+        }
+        hasher.add(appQueryRequest.getId())
+                .addFilter(appQueryRequest.getAppName())
+                .addFilter(appQueryRequest.getCover())
+                .addFilter(appQueryRequest.getInitPrompt())
+                .addFilter(appQueryRequest.getCodeGenType())
+                .addFilter(appQueryRequest.getDeployKey())
+                .add(appQueryRequest.getPriority() == null ? null : appQueryRequest.getPriority().longValue())
+                .add(appQueryRequest.getUserId());
+        if (withPaging) {
+            String sortField = StrUtil.emptyToNull(appQueryRequest.getSortField());
+            boolean loadMore = Boolean.TRUE.equals(appQueryRequest.getLoadMore());
+            hasher.add(appQueryRequest.getPageNum())
+                    .add(appQueryRequest.getPageSize())
+                    .add(sortField)
+                    .add(sortField != null && "ascend".equals(appQueryRequest.getSortOrder()))
+                    .add(loadMore)
+                    .add(loadMore && Boolean.TRUE.equals(appQueryRequest.getApproximateTotal()));
+        }
+        return hasher;
+    }
+
+    /**
+     * 逐个字段累加哈希（FNV-1a 或指定的摘要算法），不拼接中间字符串
+     * 每个字段先写入类型标记（null 有单独的标记），字符串再写入长度，字段边界不会混淆
+     */
+    private static final class KeyHasher {
+
+        private static final int NULL_MARKER = 0;
+
+        private static final int STRING_MARKER = 1;
+
+        private static final int LONG_MARKER = 2;
+
+        private static final int BOOLEAN_MARKER = 3;
+
+        /**
+         * 为 null 时使用 FNV-1a
+         */
+        private final MessageDigest digest;
+
+        private long hash = FNV_OFFSET_BASIS;
+
+        KeyHasher(MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        KeyHasher add(String value) {
+            if (value == null) {
+                return mixByte(NULL_MARKER);
+            }
+            mixByte(STRING_MARKER);
+            mixInt(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                mixByte(c >>> 8);
+                mixByte(c);
+            }
+            return this;
+        }
+
+        /**
+         * 筛选条件：空白字符串不参与查询，等同于 null
+         */
+        KeyHasher addFilter(String value) {
+            return add(StrUtil.isBlank(value) ? null : value);
+        }
+
+        KeyHasher add(Long value) {
+            if (value == null) {
+                return mixByte(NULL_MARKER);
+            }
+            mixByte(LONG_MARKER);
+            mixInt((int) (value >>> 32));
+            mixInt(value.intValue());
+            return this;
+        }
+
+        KeyHasher add(boolean value) {
+            mixByte(BOOLEAN_MARKER);
+            return mixByte(value ? 1 : 0);
+        }
+
+        String toHex() {
+            return digest == null ? HexFormat.of().toHexDigits(hash) : HexFormat.of().formatHex(digest.digest());
+        }
+
+        private void mixInt(int value) {
+            mixByte(value >>> 24);
+            mixByte(value >>> 16);
+            mixByte(value >>> 8);
+            mixByte(value);
+        }
+
+        private KeyHasher mixByte(int value) {
+            if (digest != null) {
+                digest.update((byte) value);
+                return this;
+            }
+            hash ^= value & 0xff;
+            hash *= FNV_PRIME;
+            return this;
         }
-        // 先转JSON，再MD5
-        String jsonStr = JSONUtil.toJsonStr(obj);
-        return DigestUtil.md5Hex(jsonStr);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,45 @@
+// 常驻的 Vite 构建 worker：由后端 ViteBuildWorkerPool 启动，通过 stdin / stdout 按行通信
+// 输入：{"projectPath": "..."}，输出：@@vite-build-result@@{"success": true|false, "error": "..."}
+// 同一个 Node 进程里 vite 及其插件只加载一次，后续构建省去 Node 启动和插件初始化的开销
+import { createInterface } from 'node:readline'
+import { createRequire } from 'node:module'
+import { dirname, join } from 'node:path'
+import { pathToFileURL } from 'node:url'
+
+const RESULT_PREFIX = '@@vite-build-result@@'
+
+function respond(result) {
+  process.stdout.write(RESULT_PREFIX + JSON.stringify(result) + '\n')
+}
+
+// 从项目自己的 node_modules 解析 vite，共享依赖缓存时解析到同一个真实路径，模块只会加载一次
+async function loadVite(projectPath) {
+  const require = createRequire(join(projectPath, 'package.json'))
+  const viteDir = dirname(require.resolve('vite/package.json'))
+  return import(pathToFileURL(join(viteDir, 'dist/node/index.js')).href)
+}
+
+async function handle(line) {
+  if (!line.trim()) {
+    return
+  }
+  try {
+    const { projectPath } = JSON.parse(line)
+    process.chdir(projectPath)
+    const vite = await loadVite(projectPath)
+    await vite.build({ root: projectPath, mode: 'production', logLevel: 'warn' })
+    respond({ success: true })
+  } catch (e) {
+    respond({ success: false, error: String(e && e.message ? e.message : e) })
+  }
+}
+
+// 串行处理构建任务，后端每个 worker 同一时间只会发送一个任务
+let queue = Promise.resolve()
+const rl = createInterface({ input: process.stdin })
+rl.on('line', (line) => {
+  queue = queue.then(() => handle(line))
+})
+rl.on('close', () => {
+  queue.then(() => process.exit(0))
+})
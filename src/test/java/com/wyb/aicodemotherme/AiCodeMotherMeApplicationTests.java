@@ -1,5 +1,6 @@
 package com.wyb.aicodemotherme;
 
+import com.wyb.aicodemotherme.ai.model.message.StreamMessage;
 import com.wyb.aicodemotherme.core.AiCodeGeneratorFacade;
 import com.wyb.aicodemotherme.model.entity.User;
 import com.wyb.aicodemotherme.model.enums.CodeGenTypeEnum;
@@ -24,7 +25,7 @@ class AiCodeMotherMeApplicationTests {
 
     @Test
     void contextLoads() {
-        Flux<String> resultStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(
+        Flux<StreamMessage> resultStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(
             "生成一个任务记录网站，不多于20行代码",
             CodeGenTypeEnum.HTML,
                 2022006075610714114L
@@ -57,7 +58,7 @@ class AiCodeMotherMeApplicationTests {
 
     @Test
     void generateVueProjectCodeStream() {
-        Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(
+        Flux<StreamMessage> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(
                 "简单的任务记录网站，总代码量不超过 200 行",
                 CodeGenTypeEnum.VUE_PROJECT, 1L);
         codeStream
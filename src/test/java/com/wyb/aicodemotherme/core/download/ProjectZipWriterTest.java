@@ -0,0 +1,191 @@
+package com.wyb.aicodemotherme.core.download;
+
+import com.wyb.aicodemotherme.core.download.ProjectZipWriter.ZipSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * 并行写出的 zip 用 java.util.zip.ZipFile 读回校验：条目名、CRC、大小、修改时间、内容
+ */
+class ProjectZipWriterTest {
+
+    /**
+     * zip 的 MS-DOS 时间精度是 2 秒，测试文件的修改时间取偶数秒
+     */
+    private static final long BASE_TIME_MILLIS = 1_700_000_000_000L;
+
+    private static ForkJoinPool pool;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void createPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void shutdownPool() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void writeParallelCanBeReadBackByZipFile() throws IOException {
+        Path projectRoot = createProject();
+        List<ZipSource> sources = ProjectZipWriter.collect(projectRoot);
+        Assertions.assertTrue(ProjectZipWriter.shouldWriteParallel(sources));
+
+        Path archive = tempDir.resolve("parallel.zip");
+        try (OutputStream outputStream = Files.newOutputStream(archive)) {
+            ProjectZipWriter.writeParallel(sources, outputStream, 6, pool);
+        }
+        assertArchiveMatches(archive, sources);
+    }
+
+    @Test
+    void writeParallelWithoutCompressionCanBeReadBackByZipFile() throws IOException {
+        Path projectRoot = createProject();
+        List<ZipSource> sources = ProjectZipWriter.collect(projectRoot);
+
+        Path archive = tempDir.resolve("stored.zip");
+        try (OutputStream outputStream = Files.newOutputStream(archive)) {
+            ProjectZipWriter.writeParallel(sources, outputStream, 0, pool);
+        }
+        assertArchiveMatches(archive, sources);
+    }
+
+    @Test
+    void parallelAndSerialArchivesHaveSameEntries() throws IOException {
+        Path projectRoot = createProject();
+        List<ZipSource> sources = ProjectZipWriter.collect(projectRoot);
+
+        Path parallelArchive = tempDir.resolve("parallel.zip");
+        try (OutputStream outputStream = Files.newOutputStream(parallelArchive)) {
+            ProjectZipWriter.writeParallel(sources, outputStream, 6, pool);
+        }
+        Path serialArchive = tempDir.resolve("serial.zip");
+        try (OutputStream outputStream = Files.newOutputStream(serialArchive)) {
+            ProjectZipWriter.write(sources, outputStream, 6);
+        }
+        Assertions.assertEquals(readEntrySummaries(serialArchive), readEntrySummaries(parallelArchive));
+    }
+
+    @Test
+    void ignoredDirectoriesAreSkipped() throws IOException {
+        Path projectRoot = createProject();
+        List<ZipSource> sources = ProjectZipWriter.collect(projectRoot);
+        Assertions.assertTrue(sources.stream().noneMatch(source -> source.entryName().startsWith("node_modules")));
+        Assertions.assertTrue(sources.stream().noneMatch(source -> source.entryName().endsWith(".log")));
+    }
+
+    @Test
+    void tooManyEntriesFallBackToSerial() {
+        List<ZipSource> sources = new ArrayList<>(0x10000);
+        for (int i = 0; i < 0x10000; i++) {
+            sources.add(new ZipSource("f" + i, null, false, 1L, BASE_TIME_MILLIS));
+        }
+        Assertions.assertFalse(ProjectZipWriter.shouldWriteParallel(sources));
+    }
+
+    @Test
+    void fileOver4GbFallsBackToSerial() {
+        List<ZipSource> sources = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            sources.add(new ZipSource("f" + i, null, false, 1L, BASE_TIME_MILLIS));
+        }
+        sources.add(new ZipSource("huge.bin", null, false, 5L * 1024 * 1024 * 1024, BASE_TIME_MILLIS));
+        Assertions.assertFalse(ProjectZipWriter.shouldWriteParallel(sources));
+    }
+
+    /**
+     * 构造一个小项目：多级目录、可压缩的文本、不可压缩的随机数据（走 STORED）、空文件、中文文件名、被忽略的目录和文件
+     */
+    private Path createProject() throws IOException {
+        Path projectRoot = Files.createDirectories(tempDir.resolve("vue_project_1"));
+        Random random = new Random(42);
+        List<Path> files = new ArrayList<>();
+        files.add(writeText(projectRoot.resolve("index.html"), "<html><body>hello</body></html>\n".repeat(200)));
+        files.add(writeText(projectRoot.resolve("package.json"), "{\"name\":\"demo\"}"));
+        files.add(writeText(projectRoot.resolve("src/main.js"), "console.log('main');\n".repeat(500)));
+        files.add(writeText(projectRoot.resolve("src/App.vue"), "<template><div/></template>\n".repeat(300)));
+        files.add(writeText(projectRoot.resolve("src/components/List Item.vue"), "<template><li/></template>\n".repeat(50)));
+        // 文件系统编码不支持中文时（如 POSIX locale）跳过中文文件名
+        String unicodeName = "src/components/列表.vue";
+        if (Charset.forName(System.getProperty("sun.jnu.encoding", "UTF-8")).newEncoder().canEncode(unicodeName)) {
+            files.add(writeText(projectRoot.resolve(unicodeName), "<template><ul/></template>\n".repeat(50)));
+        }
+        files.add(writeText(projectRoot.resolve("src/components/empty.css"), ""));
+        for (int i = 0; i < 12; i++) {
+            files.add(writeText(projectRoot.resolve("src/pages/page" + i + ".vue"), ("page " + i + "\n").repeat(100 + i)));
+        }
+        byte[] randomBytes = new byte[200_000];
+        random.nextBytes(randomBytes);
+        Path image = Files.createDirectories(projectRoot.resolve("public")).resolve("image.png");
+        Files.write(image, randomBytes);
+        files.add(image);
+        writeText(projectRoot.resolve("node_modules/vue/index.js"), "ignored");
+        writeText(projectRoot.resolve("debug.log"), "ignored");
+        for (int i = 0; i < files.size(); i++) {
+            Files.setLastModifiedTime(files.get(i), FileTime.fromMillis(BASE_TIME_MILLIS + i * 2000L));
+        }
+        return projectRoot;
+    }
+
+    private static Path writeText(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, content, StandardCharsets.UTF_8);
+    }
+
+    private static void assertArchiveMatches(Path archive, List<ZipSource> sources) throws IOException {
+        try (ZipFile zipFile = new ZipFile(archive.toFile(), StandardCharsets.UTF_8)) {
+            List<String> entryNames = Collections.list(zipFile.entries()).stream().map(ZipEntry::getName).toList();
+            Assertions.assertEquals(sources.stream().map(ZipSource::entryName).toList(), entryNames);
+            for (ZipSource source : sources) {
+                ZipEntry entry = zipFile.getEntry(source.entryName());
+                Assertions.assertNotNull(entry, source.entryName());
+                Assertions.assertEquals(source.directory(), entry.isDirectory(), source.entryName());
+                if (source.directory()) {
+                    continue;
+                }
+                byte[] expected = Files.readAllBytes(source.path());
+                CRC32 crc32 = new CRC32();
+                crc32.update(expected);
+                Assertions.assertEquals(expected.length, entry.getSize(), source.entryName());
+                Assertions.assertEquals(crc32.getValue(), entry.getCrc(), source.entryName());
+                Assertions.assertEquals(source.lastModified(), entry.getTime(), source.entryName());
+                try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                    Assertions.assertArrayEquals(expected, inputStream.readAllBytes(), source.entryName());
+                }
+            }
+        }
+    }
+
+    private static List<String> readEntrySummaries(Path archive) throws IOException {
+        try (ZipFile zipFile = new ZipFile(archive.toFile(), StandardCharsets.UTF_8)) {
+            return Collections.list(zipFile.entries()).stream()
+                    .map(entry -> entry.getName() + "|" + entry.getSize() + "|" + entry.getCrc()
+                            + "|" + (entry.isDirectory() ? "" : entry.getTime()))
+                    .toList();
+        }
+    }
+}
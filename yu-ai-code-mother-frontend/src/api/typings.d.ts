@@ -27,6 +27,8 @@ declare namespace API {
     deployKey?: string
     priority?: number
     userId?: number
+    loadMore?: boolean
+    approximateTotal?: boolean
   }
 
   type AppUpdateRequest = {
@@ -131,6 +133,7 @@ declare namespace API {
     appId?: number
     userId?: number
     lastCreateTime?: string
+    lastId?: number
   }
 
   type chatToGenCodeParams = {
@@ -166,6 +169,7 @@ declare namespace API {
     appId: number
     pageSize?: number
     lastCreateTime?: string
+    lastId?: number
   }
 
   type LoginUserVO = {
@@ -186,6 +190,8 @@ declare namespace API {
     totalPage?: number
     total?: number
     optimizeCountQuery?: boolean
+    hasMore?: boolean
+    totalApproximate?: boolean
   }
 
   type PageChatHistory = {